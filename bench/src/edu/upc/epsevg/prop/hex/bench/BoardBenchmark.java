@@ -0,0 +1,75 @@
+package edu.upc.epsevg.prop.hex.bench;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.players.BitBoard;
+
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generar un hijo: copia + placeStone + isGameOver de {@link HexGameStatus}
+ * frente a play/undo in situ de {@link BitBoard}.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({Positions.EMPTY, Positions.MIDGAME, Positions.ENDGAME})
+    public String position;
+
+    private HexGameStatus status;
+    private BitBoard board;
+    private Point point;
+    private int cell;
+
+    @Setup
+    public void setup() {
+        status = Positions.get(position);
+        board = new BitBoard(status);
+        // Primera casilla vacía desde el centro
+        int[] moves = new int[board.getCells()];
+        int n = board.getMoves(moves);
+        cell = moves[n / 2];
+        point = board.toPoint(cell);
+    }
+
+    @Benchmark
+    public boolean statusCopyPlace() {
+        HexGameStatus child = new HexGameStatus(status);
+        child.placeStone(point);
+        return child.isGameOver();
+    }
+
+    @Benchmark
+    public boolean bitBoardPlayUndo() {
+        board.play(cell);
+        boolean over = board.isGameOver();
+        board.undo();
+        return over;
+    }
+
+    /** Construcción del tablero de búsqueda en la raíz de cada jugada. */
+    @Benchmark
+    public BitBoard bitBoardFromStatus() {
+        return new BitBoard(status);
+    }
+}
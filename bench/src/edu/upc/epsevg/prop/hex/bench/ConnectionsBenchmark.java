@@ -0,0 +1,86 @@
+package edu.upc.epsevg.prop.hex.bench;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.players.BitBoard;
+import edu.upc.epsevg.prop.hex.players.HSearch;
+import edu.upc.epsevg.prop.hex.players.InferiorCells;
+import edu.upc.epsevg.prop.hex.players.VirtualConnections;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste del análisis de conexiones que acompaña a cada nodo: las conexiones
+ * virtuales (puentes y plantillas de borde), la H-search y el relleno de
+ * casillas inferiores.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionsBenchmark {
+
+    @Param({Positions.EMPTY, Positions.MIDGAME, Positions.ENDGAME})
+    public String position;
+
+    private HexGameStatus status;
+    private BitBoard plain;
+    private BitBoard tracked;
+    private int cell;
+    private final HSearch hsearch = new HSearch(HSearch.DEFAULT_BUDGET);
+    private final InferiorCells inferior = new InferiorCells();
+
+    @Setup
+    public void setup() {
+        status = Positions.get(position);
+        plain = new BitBoard(status);
+        tracked = new BitBoard(status);
+        tracked.getVirtualConnections();
+        int[] moves = new int[plain.getCells()];
+        int n = plain.getMoves(moves);
+        cell = moves[n / 2];
+    }
+
+    /** play/undo con las conexiones virtuales actualizándose incrementalmente. */
+    @Benchmark
+    public boolean playUndoWithConnections() {
+        tracked.play(cell);
+        boolean over = tracked.isGameOver();
+        tracked.undo();
+        return over;
+    }
+
+    /** Conexiones virtuales calculadas desde cero, como en la raíz. */
+    @Benchmark
+    public VirtualConnections connectionsFromScratch() {
+        return new BitBoard(status).getVirtualConnections();
+    }
+
+    @Benchmark
+    public int hsearchProve() {
+        return hsearch.prove(plain);
+    }
+
+    @Benchmark
+    public int fillInUndo() {
+        int filled = inferior.fillIn(plain);
+        for (int i = 0; i < filled; i++) plain.undo();
+        return filled;
+    }
+}
@@ -0,0 +1,76 @@
+package edu.upc.epsevg.prop.hex.bench;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.PlayerType;
+import edu.upc.epsevg.prop.hex.players.BitBoard;
+import edu.upc.epsevg.prop.hex.players.Evaluator;
+import edu.upc.epsevg.prop.hex.players.ResistanceEvaluator;
+import edu.upc.epsevg.prop.hex.players.Sexagono;
+import edu.upc.epsevg.prop.hex.players.TwoDistanceEvaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste de las heurísticas de las hojas en posiciones representativas.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({Positions.EMPTY, Positions.MIDGAME, Positions.ENDGAME, Positions.UNIT_TESTING})
+    public String position;
+
+    private HexGameStatus status;
+    private BitBoard board;
+    private PlayerType player;
+    private final Evaluator twoDistance = new TwoDistanceEvaluator();
+    private final Evaluator resistance = new ResistanceEvaluator();
+
+    @Setup
+    public void setup() {
+        status = Positions.get(position);
+        board = new BitBoard(status);
+        player = status.getCurrentPlayer();
+    }
+
+    /** Heurística por defecto de Sexagono sobre el tablero de búsqueda. */
+    @Benchmark
+    public int dijkstra() {
+        return Sexagono.dijkstra(board, player);
+    }
+
+    /** La misma desde un {@link HexGameStatus}, como la llama {@code UnitTesting}. */
+    @Benchmark
+    public int dijkstraFromStatus() {
+        return Sexagono.dijkstra(status, player);
+    }
+
+    @Benchmark
+    public int twoDistance() {
+        return twoDistance.evaluate(board, board.getCurrentPlayer());
+    }
+
+    @Benchmark
+    public int resistance() {
+        return resistance.evaluate(board, board.getCurrentPlayer());
+    }
+}
@@ -0,0 +1,77 @@
+package edu.upc.epsevg.prop.hex.bench;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.MoveNode;
+import edu.upc.epsevg.prop.hex.PlayerType;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Posiciones fijas de los benchmarks, siempre las mismas entre ejecuciones
+ * (partidas aleatorias con semilla fija).
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+final class Positions {
+
+    /** Nombres aceptados por {@link #get(String)}, para los {@code @Param}. */
+    static final String EMPTY = "empty";
+    static final String MIDGAME = "midgame";
+    static final String ENDGAME = "endgame";
+    static final String UNIT_TESTING = "unitTesting";
+
+    private Positions() {
+    }
+
+    /**
+     * @param name {@link #EMPTY}, {@link #MIDGAME} (11x11 con un tercio de
+     *             las casillas ocupadas), {@link #ENDGAME} (11x11 con tres
+     *             cuartos) o {@link #UNIT_TESTING} (el tablero 9x9 de
+     *             {@code UnitTesting}, a una piedra de terminar).
+     */
+    static HexGameStatus get(String name) {
+        switch (name) {
+            case EMPTY:
+                return new HexGameStatus(11);
+            case MIDGAME:
+                return playout(11, 121 / 3, 42);
+            case ENDGAME:
+                return playout(11, 121 * 3 / 4, 42);
+            case UNIT_TESTING:
+                return new HexGameStatus(new byte[][]{
+                    {0, 0, 0, 0, -1, 0, 0, 0, 0},
+                    {0, 0, 0, 0, 0, 0, 0, 0, 0},
+                    {0, 0, 0, -1, 0, 0, 0, 0, 0},
+                    {0, 0, 0, 0, 0, 0, 0, 0, 0},
+                    {0, 0, -1, 0, 0, 0, 0, 0, 0},
+                    {0, -1, 0, 0, 0, 0, 0, 0, 0},
+                    {0, -1, 0, 0, 0, 0, 0, 0, 0},
+                    {0, -1, 0, 0, 0, 0, 0, 0, 0},
+                    {0, -1, 0, 0, 0, 0, 0, 0, 0}
+                }, PlayerType.PLAYER2);
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /**
+     * Coloca piedras al azar alternando jugadores, saltándose las que
+     * terminarían la partida.
+     */
+    private static HexGameStatus playout(int size, int stones, long seed) {
+        Random random = new Random(seed);
+        HexGameStatus s = new HexGameStatus(size);
+        int placed = 0;
+        while (placed < stones) {
+            List<MoveNode> moves = s.getMoves();
+            HexGameStatus next = new HexGameStatus(s);
+            next.placeStone(moves.get(random.nextInt(moves.size())).getPoint());
+            if (next.isGameOver()) continue;
+            s = next;
+            placed++;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,77 @@
+package edu.upc.epsevg.prop.hex.bench;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.PlayerMove;
+import edu.upc.epsevg.prop.hex.players.Sexagono;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Búsqueda completa a profundidad fija con un jugador nuevo en cada
+ * invocación (tabla de transposiciones vacía), con un hilo y sin ponder. Los
+ * nodos explorados se publican como contador auxiliar ({@code nodes}), de
+ * donde JMH saca los nodos por segundo.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({Positions.EMPTY, Positions.MIDGAME, Positions.UNIT_TESTING})
+    public String position;
+
+    @Param({"3", "4"})
+    public int depth;
+
+    private HexGameStatus status;
+    private Sexagono player;
+
+    /** Nodos explorados por las búsquedas de la iteración. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupPosition() {
+        status = Positions.get(position);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupPlayer() {
+        player = new Sexagono(depth, false, new Sexagono.Options().ttMegabytes(4));
+    }
+
+    @Benchmark
+    public PlayerMove move(Nodes counter) {
+        PlayerMove m = player.move(new HexGameStatus(status));
+        counter.nodes += m.getNumerOfNodesExplored();
+        return m;
+    }
+}
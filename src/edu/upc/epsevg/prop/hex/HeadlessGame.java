@@ -9,8 +9,13 @@ import edu.upc.epsevg.prop.hex.players.Sexagono;
 import java.lang.ref.WeakReference;
 
 import java.util.ArrayList;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,7 +26,10 @@ import java.util.logging.Logger;
 public class HeadlessGame {
 
     private IPlayer players[];
-    private HexGameStatus status;
+    private Supplier<? extends IPlayer> factory1;
+    private Supplier<? extends IPlayer> factory2;
+    private int parallelGames = 1;
+    private GcPolicy gcPolicy = GcPolicy.NEVER;
     private int gameCount;
     private int timeout;
     private int size;
@@ -39,6 +47,10 @@ public class HeadlessGame {
         IPlayer player4 = new RandomPlayer("Pepe");                 
         
         HeadlessGame game = new HeadlessGame(player2, player1, 11, 10/*s timeout*/, 5/*games*/);
+        // Torneig concurrent: 4 partides alhora, amb jugadors nous per partida
+        //HeadlessGame game = new HeadlessGame(() -> new Sexagono(0, true), () -> new H_E_X_Player(2), 11, 10, 100, 4);
+        // SPRT: atura quan es demostra +10 Elo o que no hi ha millora (màxim 2000 partides)
+        //GameResult gr = new HeadlessGame(() -> new Sexagono(0, true), () -> new H_E_X_Player(2), 11, 1, 2000, 4).startSprt(0, 10, 0.05, 0.05);
         GameResult gr = game.start();
         System.out.println(gr);
 
@@ -54,94 +66,220 @@ public class HeadlessGame {
         this.timeout = timeout;
     }
 
+    /**
+     * Concurrent tournament: plays {@code parallelGames} independent games at
+     * the same time, each one with new player instances (players keep per-game
+     * state). Colours alternate every game, so each pair of games has both
+     * engines playing first once; results are counted per engine.
+     *
+     * Every move still gets the full {@code timeout}, so parallelGames times
+     * the threads of each player should not exceed the available cores.
+     *
+     * @param p1 Factory of the first engine.
+     * @param p2 Factory of the second engine.
+     * @param size Board size.
+     * @param timeout Seconds per move.
+     * @param gameCount Total number of games.
+     * @param parallelGames Games played at the same time.
+     */
+    public HeadlessGame(Supplier<? extends IPlayer> p1, Supplier<? extends IPlayer> p2, int size, int timeout, int gameCount, int parallelGames) {
+        this.size = size;
+        this.factory1 = p1;
+        this.factory2 = p2;
+        this.parallelGames = Math.max(1, parallelGames);
+        this.gameCount = gameCount;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Memory cleaning between moves. The original runner forced a full
+     * collection before every move so that one player's garbage would not be
+     * collected during the other's time, at the cost of a full GC per move.
+     */
+    public enum GcPolicy {
+        /** Never force a collection. */
+        NEVER,
+        /** Force a full collection after every game. */
+        BETWEEN_GAMES,
+        /** Force a full collection after every move (stops every game being played). */
+        EVERY_MOVE
+    }
+
+    /**
+     * @param gcPolicy When to force a full collection (default {@link GcPolicy#NEVER});
+     *                 the time spent is reported in the results.
+     */
+    public void setGcPolicy(GcPolicy gcPolicy) {
+        this.gcPolicy = gcPolicy;
+    }
+
     public GameResult start() {
-        GameResult gr = new GameResult();
-        for (int i = 0; i < gameCount; i++) {
-            //System.out.println(">" + i);
-            gr.update(play(players[0], players[1]));
+        try (MoveScheduler scheduler = new MoveScheduler()) {
+            if (factory1 != null) return startConcurrent(scheduler);
+            GameResult gr = new GameResult();
+            gr.setNames(players[0].getName(), players[1].getName());
+            for (int i = 0; i < gameCount; i++) {
+                //System.out.println(">" + i);
+                gr.update(play(players, scheduler, gr, true));
+            }
+            return gr;
         }
-        return gr;
     }
 
-    private class Result {
-        public boolean ok;
+    /**
+     * Gauntlet with an SPRT: plays games with alternating colours (as in the
+     * concurrent mode when built with factories, one at a time otherwise) and
+     * stops starting new ones as soon as the test accepts one of the
+     * hypotheses or {@code gameCount} games have been played. A progress line
+     * with the Elo estimate and the LLR is printed after every game. Games
+     * still in flight when the test is decided appear in the results but do
+     * not change the SPRT verdict.
+     *
+     * @param elo0 Elo difference of H0 (usually 0).
+     * @param elo1 Elo difference of H1 (the improvement to detect).
+     * @param alpha False positive rate (accepting H1 when H0 holds).
+     * @param beta False negative rate (accepting H0 when H1 holds).
+     */
+    public GameResult startSprt(double elo0, double elo1, double alpha, double beta) {
+        try (MoveScheduler scheduler = new MoveScheduler()) {
+            GameResult gr = new GameResult();
+            gr.sprt = new Sprt(elo0, elo1, alpha, beta);
+            runGames(scheduler, gr);
+            return gr;
+        }
     }
 
-    private PlayerType play(IPlayer player, IPlayer player0) {
-        this.status = new HexGameStatus(size);
-
-        while (!this.status.isGameOver()) {
+    private GameResult startConcurrent(MoveScheduler scheduler) {
+        GameResult gr = new GameResult();
+        runGames(scheduler, gr);
+        return gr;
+    }
 
-            final Semaphore semaphore = new Semaphore(1);
-            semaphore.tryAcquire();
-            //System.out.println("." + new Date());
-            final Result r = new Result();
-            PlayerType cp = status.getCurrentPlayer();
-            Thread t1 = new Thread(() -> {
-                PlayerMove m = null;
-                try {
-                    m = players[cp == PlayerType.PLAYER1 ? 0 : 1].move(new HexGameStatus(status));
-                } catch(Exception ex) {
-                    System.out.println("Excepció descontrolada al player:"+cp.name());
-                    ex.printStackTrace();
-                }
-                if (m != null) {
-                    status.placeStone(m.getPoint());
-                } else {
-                    status.forceLoser();
-                }
-                System.out.print(cp==PlayerType.PLAYER1?"1":"2");
-                r.ok = true;
-                semaphore.release();
-            });
-
-            Thread t2 = new Thread(() -> {
-                try {
-                    Thread.sleep(HeadlessGame.this.timeout * 1000);
-                } catch (InterruptedException ex) {
-                }
-                if (!r.ok) {
-                    players[cp == PlayerType.PLAYER1 ? 0 : 1].timeout();
+    /**
+     * Plays up to {@code gameCount} games with alternating colours, each worker
+     * taking the next game until there are no more (or the SPRT of the result
+     * is resolved).
+     */
+    private void runGames(MoveScheduler scheduler, GameResult gr) {
+        Sprt sprt = gr.sprt;
+        AtomicInteger next = new AtomicInteger();
+        int workers = factory1 != null ? parallelGames : 1;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            tasks.add(pool.submit(() -> {
+                int i;
+                while ((sprt == null || sprt.state() == Sprt.State.CONTINUE) && (i = next.getAndIncrement()) < gameCount) {
+                    IPlayer a = factory1 != null ? factory1.get() : players[0];
+                    IPlayer b = factory1 != null ? factory2.get() : players[1];
+                    gr.setNames(a.getName(), b.getName());
+                    boolean swap = (i & 1) == 1;
+                    PlayerType winner;
+                    try {
+                        winner = play(swap ? new IPlayer[]{b, a} : new IPlayer[]{a, b}, scheduler, gr, false);
+                    } finally {
+                        // Els jugadors de les factories són d'aquesta partida: se n'alliberen els fils
+                        if (factory1 != null) {
+                            release(a);
+                            release(b);
+                        }
+                    }
+                    // El resultat es guarda per motor: PLAYER1 vol dir que guanya el primer
+                    if (swap && winner != null) winner = PlayerType.opposite(winner);
+                    gr.update(winner);
+                    if (sprt == null) {
+                        System.out.print(winner == PlayerType.PLAYER1 ? "A" : winner == null ? "-" : "B");
+                    } else {
+                        sprt.update(winner);
+                        System.out.println(sprt);
+                    }
                 }
-            });
-
-            t1.start();
-            t2.start();
-            long WAIT_EXTRA_TIME = 2000;
+            }));
+        }
+        for (Future<?> f : tasks) {
             try {
-                if (!semaphore.tryAcquire(1, timeout * 1000 + WAIT_EXTRA_TIME, TimeUnit.MILLISECONDS)) {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex.getCause());
+            }
+        }
+        pool.shutdown();
+    }
 
-                    System.out.println("Espera il·legal ! Player trampós:"+cp.name());
-                    //throw new RuntimeException("Jugador trampós ! Espera il·legal !");
-                    // Som millors persones deixant que el jugador il·legal continui jugant...
-                    semaphore.acquire();
-                }
+    /**
+     * Releases the resources (search threads) of a player created for a single
+     * game, if it holds any.
+     */
+    private static void release(IPlayer player) {
+        if (!(player instanceof AutoCloseable)) return;
+        try {
+            ((AutoCloseable) player).close();
+        } catch (Exception ex) {
+            Logger.getLogger(HeadlessGame.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
 
-            } catch (InterruptedException ex) {
-                Logger.getLogger(HeadlessGame.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Plays one game between {@code players[0]} (PLAYER1) and {@code players[1]}.
+     *
+     * @param trace Print a digit for every move (only when games are played
+     *              one at a time).
+     */
+    private PlayerType play(IPlayer[] players, MoveScheduler scheduler, GameResult gr, boolean trace) {
+        HexGameStatus status = new HexGameStatus(size);
+
+        while (!status.isGameOver()) {
+            PlayerType cp = status.getCurrentPlayer();
+            PlayerMove m = scheduler.move(players[cp == PlayerType.PLAYER1 ? 0 : 1], status, timeout * 1000L);
+            if (m != null) {
+                status.placeStone(m.getPoint());
+            } else {
+                status.forceLoser();
             }
-            // Netegem la memòria (for free!)
-            gc();
-            
+            if (trace) System.out.print(cp==PlayerType.PLAYER1?"1":"2");
+            if (gcPolicy == GcPolicy.EVERY_MOVE) gr.addGc(timedGc());
         }
+        if (gcPolicy == GcPolicy.BETWEEN_GAMES) gr.addGc(timedGc());
         return status.winnerPlayer;
     }
 
+    /**
+     * Results of every game, from the point of view of the first player or
+     * engine. Safe to update from several games at once.
+     */
     private class GameResult {
 
         java.util.List<PlayerType> results;
+        String name1;
+        String name2;
+        int gcCount;
+        long gcNanos;
+        Sprt sprt;
 
         public GameResult() {
             results = new ArrayList<PlayerType>();
 
         }
 
-        public void update(PlayerType res) {
+        public synchronized void setNames(String name1, String name2) {
+            if (this.name1 != null) return;
+            this.name1 = name1;
+            this.name2 = name2;
+        }
+
+        public synchronized void update(PlayerType res) {
             results.add(res);
         }
 
+        public synchronized void addGc(long nanos) {
+            gcCount++;
+            gcNanos += nanos;
+        }
+
         @Override
-        public String toString() {
+        public synchronized String toString() {
             String res = "\n ================================================================="+
                          "\n ================       RESULTS       ============================"+
                          "\n =================================================================\n";
@@ -161,8 +299,10 @@ public class HeadlessGame {
                 }
             }
 
-            res += "PLAYER 1 (" + pad(players[0].getName(), 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
-            res += "PLAYER 2 (" + pad(players[1].getName(), 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
+            res += "PLAYER 1 (" + pad(name1, 40) + "):\t wins " + wins1 + "\t ties:" + ties1 + "\t looses:" + loose1 + "\n";
+            res += "PLAYER 2 (" + pad(name2, 40) + "):\t wins " + loose1 + "\t ties:" + ties1 + "\t looses:" + wins1 + "\n";
+            if (sprt != null) res += "SPRT:\t " + sprt + "\n";
+            if (gcCount > 0) res += "GC (" + gcPolicy + "):\t " + gcCount + " collections, " + gcNanos / 1_000_000 + " ms\n";
             return res;
         }
 
@@ -181,6 +321,15 @@ public class HeadlessGame {
     }
 
     
+    /**
+     * Runs {@link #gc()} and returns how long it took, in nanoseconds.
+     */
+    private static long timedGc() {
+        long t = System.nanoTime();
+        gc();
+        return System.nanoTime() - t;
+    }
+
     /**
      * This method guarantees that garbage collection is done unlike
      * <code>{@link System#gc()}</code>
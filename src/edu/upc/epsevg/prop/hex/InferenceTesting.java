@@ -0,0 +1,173 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.BitBoard;
+import edu.upc.epsevg.prop.hex.players.HSearch;
+import edu.upc.epsevg.prop.hex.players.InferiorCells;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comprobación, como {@link UnitTesting}, de los resultados exactos que usa la
+ * búsqueda para podar: se comparan con una búsqueda exhaustiva en posiciones
+ * aleatorias (semilla fija) de tableros pequeños. Rellenar las casillas
+ * inferiores con {@link InferiorCells#fillIn} no puede cambiar el ganador, el
+ * ganador que demuestra {@link HSearch#prove} tiene que ganar de verdad y toda
+ * jugada fuera de la {@link HSearch#mustplay} tiene que perder. La H-search
+ * se comprueba también a lo largo de paseos de play/undo sobre un mismo
+ * tablero, donde cada ply hereda las conexiones del anterior.
+ *
+ * Termina con código 1 si alguna comprobación falla.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class InferenceTesting {
+
+    private static final long SEED = 7;
+    private static final int POSITIONS = 2000;
+
+    // Casillas vacías máximas de cada posición: la búsqueda exhaustiva crece muy rápido
+    private static final int MAX_EMPTIES = 10;
+
+    private static final int WALKS = 500;
+    private static final int WALK_MOVES = 6;
+
+    private static final HashMap<Long, Boolean> memo = new HashMap<>();
+
+    private static int proved, restricted;
+
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        InferiorCells inferior = new InferiorCells();
+        int errors = 0;
+        for (int size = 3; size <= 5; size++) {
+            HSearch hsearch = new HSearch(HSearch.DEFAULT_BUDGET);
+            int filled = 0;
+            proved = 0;
+            restricted = 0;
+            for (int i = 0; i < POSITIONS; i++) {
+                HexGameStatus s = randomPosition(random, size);
+                if (s == null) continue;
+                BitBoard b = new BitBoard(s);
+
+                int toMove = b.getCurrentPlayer();
+                boolean toMoveWins = solve(b);
+
+                int fills = inferior.fillIn(b);
+                if (fills > 0) {
+                    filled++;
+                    boolean stillWins = b.isGameOver() ? b.getWinner() == toMove : solve(b);
+                    if (stillWins != toMoveWins) {
+                        errors++;
+                        System.out.println("fillIn " + size + "x" + size + ": cambia el ganador\n" + s);
+                    }
+                    for (int j = 0; j < fills; j++) b.undo();
+                }
+
+                errors += checkHSearch(hsearch, b, size + "x" + size + "\n" + s);
+            }
+
+            // Paseos: cada prove hereda la región del ply anterior, tanto al jugar como al deshacer
+            for (int i = 0; i < WALKS; i++) {
+                HexGameStatus s = randomPosition(random, size);
+                if (s == null) continue;
+                BitBoard b = new BitBoard(s);
+                String path = size + "x" + size + " paseo";
+                errors += checkHSearch(hsearch, b, path + "\n" + s);
+                int played = 0;
+                int[] moves = new int[b.getCells()];
+                while (played < WALK_MOVES) {
+                    int c = moves[random.nextInt(b.getMoves(moves))];
+                    b.play(c);
+                    played++;
+                    path += " " + b.toPoint(c);
+                    if (b.isGameOver()) break;
+                    errors += checkHSearch(hsearch, b, path + "\n" + s);
+                }
+                while (played-- > 0) {
+                    b.undo();
+                    errors += checkHSearch(hsearch, b, path + " (deshaciendo)\n" + s);
+                }
+            }
+            System.out.println(size + "x" + size + ": " + filled + " rellenadas, " + proved + " demostradas, " + restricted + " con mustplay");
+        }
+        System.out.println(errors == 0 ? "OK" : errors + " errores");
+        if (errors > 0) System.exit(1);
+    }
+
+    /**
+     * Compara {@link HSearch#prove} y {@link HSearch#mustplay} con la búsqueda
+     * exhaustiva en la posición actual del tablero.
+     *
+     * @return Número de errores.
+     */
+    private static int checkHSearch(HSearch hsearch, BitBoard b, String where) {
+        int errors = 0;
+        int winner = hsearch.prove(b);
+        if (winner != BitBoard.NONE) {
+            proved++;
+            if ((winner == b.getCurrentPlayer()) != solve(b)) {
+                errors++;
+                System.out.println("prove " + where + ": gana " + winner + " y no es cierto");
+            }
+            return errors;
+        }
+
+        long[] mustplay = new long[(b.getCells() + 63) >>> 6];
+        if (!hsearch.mustplay(mustplay)) return errors;
+        restricted++;
+        int[] moves = new int[b.getCells()];
+        int n = b.getMoves(moves);
+        for (int j = 0; j < n; j++) {
+            int c = moves[j];
+            if ((mustplay[c >>> 6] & (1L << c)) != 0) continue;
+            b.play(c);
+            boolean wins = b.isGameOver() || !solve(b);
+            b.undo();
+            if (wins) {
+                errors++;
+                System.out.println("mustplay " + where + ": " + b.toPoint(c) + " gana fuera de la mustplay");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Posición aleatoria no terminada con como mucho {@link #MAX_EMPTIES}
+     * casillas vacías, o null si la partida acaba antes.
+     */
+    private static HexGameStatus randomPosition(Random random, int size) {
+        HexGameStatus s = new HexGameStatus(size);
+        int empties = 1 + random.nextInt(Math.min(MAX_EMPTIES, size * size));
+        while (!s.isGameOver() && s.getMoves().size() > empties) {
+            List<MoveNode> moves = s.getMoves();
+            s.placeStone(moves.get(random.nextInt(moves.size())).getPoint());
+        }
+        return s.isGameOver() ? null : s;
+    }
+
+    /**
+     * Búsqueda exhaustiva: indica si gana el jugador con el turno.
+     */
+    private static boolean solve(BitBoard b) {
+        memo.clear();
+        return wins(b);
+    }
+
+    private static boolean wins(BitBoard b) {
+        Boolean known = memo.get(b.getHash());
+        if (known != null) return known;
+        int[] moves = new int[b.getCells()];
+        int n = b.getMoves(moves);
+        boolean result = false;
+        for (int i = 0; i < n && !result; i++) {
+            b.play(moves[i]);
+            result = b.isGameOver() || !wins(b);
+            b.undo();
+        }
+        memo.put(b.getHash(), result);
+        return result;
+    }
+
+}
@@ -0,0 +1,60 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.SexagonoMCTS;
+import edu.upc.epsevg.prop.hex.players.SexagonoMCTS.Parallelism;
+
+/**
+ * Escalado de {@link SexagonoMCTS} con el número de hilos: simulaciones por
+ * segundo de una jugada con tiempo fijo desde el tablero vacío, para los dos
+ * esquemas de paralelismo y 1, 2, 4, 8 y 16 hilos.
+ *
+ * Uso: {@code MctsScalingBenchmark [lado] [milisegundos por jugada]} (por
+ * defecto 11 y 2000).
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class MctsScalingBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        System.out.println("Procesadores disponibles: " + Runtime.getRuntime().availableProcessors());
+        // Calentamiento para que el JIT compile la búsqueda antes de medir
+        for (Parallelism mode : Parallelism.values()) {
+            timedMove(new SexagonoMCTS(0, true, new SexagonoMCTS.Options().threads(2).parallelism(mode)), size, millis);
+        }
+        for (Parallelism mode : Parallelism.values()) {
+            double base = 0;
+            for (int threads : THREADS) {
+                SexagonoMCTS player = new SexagonoMCTS(0, true, new SexagonoMCTS.Options().threads(threads).parallelism(mode));
+                // Una jugada corta para arrancar el pool de hilos
+                timedMove(player, size, millis / 4);
+                PlayerMove m = timedMove(player, size, millis);
+                double rate = m.getNumerOfNodesExplored() * 1000.0 / millis;
+                if (threads == 1) base = rate;
+                System.out.printf("%-13s %2d hilo(s): %10.0f simulaciones/s  x%.2f  jugada %s%n",
+                        mode, threads, rate, rate / base, m.getPoint());
+            }
+        }
+    }
+
+    private static PlayerMove timedMove(SexagonoMCTS player, int size, int millis) throws InterruptedException {
+        Thread watchdog = new Thread(() -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            player.timeout();
+        });
+        watchdog.setDaemon(true);
+        watchdog.start();
+        PlayerMove m = player.move(new HexGameStatus(size));
+        watchdog.join();
+        return m;
+    }
+}
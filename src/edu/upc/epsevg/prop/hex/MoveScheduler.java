@@ -0,0 +1,84 @@
+package edu.upc.epsevg.prop.hex;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Asks players for moves with a time limit, reusing the same threads for every
+ * move of every game.
+ *
+ * Moves run on a cached pool of daemon threads (one per game being played at
+ * the same time) and a single watchdog thread delivers {@link IPlayer#timeout()}
+ * at each move's deadline; the alarm is cancelled as soon as the move arrives.
+ *
+ * @author bernat
+ */
+final class MoveScheduler implements AutoCloseable {
+
+    /** Extra time a player gets after its timeout before being reported. */
+    static final long WAIT_EXTRA_TIME = 2000;
+
+    private final ExecutorService movers = Executors.newCachedThreadPool(daemon("HeadlessGame-move"));
+    private final ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, daemon("HeadlessGame-watchdog"));
+
+    MoveScheduler() {
+        // Les alarmes cancel·lades no s'han de quedar a la cua fins al seu termini
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Asks the player for a move and waits for it.
+     *
+     * @param player Player to move.
+     * @param status Current position (the player gets a copy).
+     * @param timeoutMillis Time until {@link IPlayer#timeout()} is delivered.
+     * @return The move, or null if the player failed with an exception.
+     */
+    PlayerMove move(IPlayer player, HexGameStatus status, long timeoutMillis) {
+        PlayerType cp = status.getCurrentPlayer();
+        HexGameStatus copy = new HexGameStatus(status);
+        Future<PlayerMove> move = movers.submit(() -> player.move(copy));
+        ScheduledFuture<?> alarm = watchdog.schedule(() -> {
+            if (!move.isDone()) player.timeout();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            try {
+                return move.get(timeoutMillis + WAIT_EXTRA_TIME, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                System.out.println("Espera il·legal ! Player trampós:" + cp.name());
+                // Som millors persones deixant que el jugador il·legal continui jugant...
+                return move.get();
+            }
+        } catch (ExecutionException ex) {
+            System.out.println("Excepció descontrolada al player:" + cp.name());
+            ex.getCause().printStackTrace();
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            alarm.cancel(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        movers.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package edu.upc.epsevg.prop.hex;
+
+import edu.upc.epsevg.prop.hex.players.BitBoard;
+import edu.upc.epsevg.prop.hex.players.Playout;
+
+/**
+ * Mide cuántas partidas aleatorias por segundo hace {@link Playout} desde el
+ * tablero vacío.
+ *
+ * Uso: {@code PlayoutBenchmark [lado] [segundos] [hilos]} (por defecto 11, 5, 1).
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class PlayoutBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        BitBoard board = new BitBoard(new HexGameStatus(size));
+        Playout root = new Playout(size);
+
+        // Calentamiento para que el JIT compile run()
+        root.load(board);
+        for (int i = 0; i < 200_000; i++) root.run();
+
+        long[] playouts = new long[threads];
+        long[] firstWins = new long[threads];
+        Thread[] workers = new Thread[threads];
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final Playout p = root.split();
+            workers[t] = new Thread(() -> {
+                p.load(board);
+                long n = 0, wins = 0;
+                do {
+                    for (int i = 0; i < 1024; i++) {
+                        if (p.run() == 0) wins++;
+                    }
+                    n += 1024;
+                } while (System.nanoTime() < end);
+                playouts[id] = n;
+                firstWins[id] = wins;
+            });
+            workers[t].start();
+        }
+        long total = 0, wins = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += playouts[t];
+            wins += firstWins[t];
+        }
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("%dx%d, %d hilo(s): %d partidas en %.2f s = %.0f partidas/s%n",
+                size, size, threads, total, elapsed, total / elapsed);
+        System.out.printf("Victorias del primer jugador: %.3f%n", (double) wins / total);
+    }
+}
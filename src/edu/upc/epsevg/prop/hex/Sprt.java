@@ -0,0 +1,151 @@
+package edu.upc.epsevg.prop.hex;
+
+/**
+ * Test secuencial de razón de probabilidades (SPRT) entre dos motores, con la
+ * estimación de la diferencia de Elo y su intervalo de confianza.
+ *
+ * Se contrasta H0: la diferencia es {@code elo0} contra H1: es {@code elo1}
+ * (modelo logístico: una diferencia d da una puntuación esperada
+ * {@code 1 / (1 + 10^(-d/400))}). Cada partida suma su log-verosimilitud (las
+ * tablas cuentan como media victoria y media derrota) y el test se resuelve en
+ * cuanto la suma (LLR) sale de {@code [ln(beta / (1 - alpha)), ln((1 - beta) / alpha)]}.
+ *
+ * Los resultados se dan siempre desde el punto de vista del primer motor.
+ * Se puede actualizar desde varias partidas a la vez. La primera decisión es
+ * definitiva: las partidas que terminan después (las que ya se estaban jugando)
+ * no cuentan para el test y sólo se informa de cuántas son.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class Sprt {
+
+    /** Estado del test. */
+    public enum State {
+        /** Aún no hay suficientes partidas. */
+        CONTINUE,
+        /** Se acepta H0: el primer motor no mejora en {@code elo1}. */
+        H0,
+        /** Se acepta H1: el primer motor es mejor en {@code elo1}. */
+        H1
+    }
+
+    /** Cuantil normal del intervalo de confianza del 95%. */
+    private static final double Z95 = 1.959964;
+
+    private final double elo0;
+    private final double elo1;
+    private final double lower;
+    private final double upper;
+    // Log-verosimilitud de una victoria y de una derrota
+    private final double winLlr;
+    private final double lossLlr;
+
+    private int wins;
+    private int losses;
+    private int draws;
+    // Decisión tomada (CONTINUE mientras no hay ninguna) y partidas terminadas después
+    private State decision = State.CONTINUE;
+    private int lateGames;
+
+    /**
+     * @param elo0 Diferencia de Elo de H0 (normalmente 0).
+     * @param elo1 Diferencia de Elo de H1 (la mejora que se quiere detectar).
+     * @param alpha Probabilidad de aceptar H1 siendo cierta H0 (falso positivo).
+     * @param beta Probabilidad de aceptar H0 siendo cierta H1 (falso negativo).
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lower = Math.log(beta / (1 - alpha));
+        this.upper = Math.log((1 - beta) / alpha);
+        double s0 = score(elo0), s1 = score(elo1);
+        this.winLlr = Math.log(s1 / s0);
+        this.lossLlr = Math.log((1 - s1) / (1 - s0));
+    }
+
+    /**
+     * Añade el resultado de una partida.
+     *
+     * @param winner {@code PLAYER1} si gana el primer motor, {@code PLAYER2}
+     *               si gana el segundo, null si hay tablas.
+     * @return El estado del test tras la partida. Si ya estaba decidido, la
+     *         partida no cuenta y se devuelve la decisión tomada.
+     */
+    public synchronized State update(PlayerType winner) {
+        if (decision != State.CONTINUE) {
+            lateGames++;
+            return decision;
+        }
+        if (winner == null) draws++;
+        else if (winner == PlayerType.PLAYER1) wins++;
+        else losses++;
+        double llr = llr();
+        decision = llr >= upper ? State.H1 : llr <= lower ? State.H0 : State.CONTINUE;
+        return decision;
+    }
+
+    public synchronized State state() {
+        return decision;
+    }
+
+    /** Partidas terminadas después de la decisión, que no cuentan para el test. */
+    public synchronized int lateGames() {
+        return lateGames;
+    }
+
+    public synchronized int games() {
+        return wins + losses + draws;
+    }
+
+    /** Log-verosimilitud acumulada de H1 frente a H0. */
+    public synchronized double llr() {
+        return (wins + draws / 2.0) * winLlr + (losses + draws / 2.0) * lossLlr;
+    }
+
+    /** Diferencia de Elo estimada a partir de la puntuación media. */
+    public synchronized double elo() {
+        return elo(mean());
+    }
+
+    /**
+     * Intervalo de confianza del 95% de la diferencia de Elo.
+     *
+     * @return {mínimo, máximo}; infinitos si la puntuación es 0 o 1.
+     */
+    public synchronized double[] eloInterval() {
+        int n = games();
+        if (n == 0) return new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double s = mean();
+        double var = (wins * (1 - s) * (1 - s) + losses * s * s + draws * (0.5 - s) * (0.5 - s)) / n;
+        double margin = Z95 * Math.sqrt(var / n);
+        return new double[]{elo(s - margin), elo(s + margin)};
+    }
+
+    /**
+     * Línea de progreso: partidas, resultados, Elo con su intervalo, LLR con sus
+     * límites y las partidas ignoradas tras la decisión, si las hay.
+     */
+    @Override
+    public synchronized String toString() {
+        double[] ci = eloInterval();
+        String res = String.format("Games %d: +%d -%d =%d  Elo %.1f [%.1f, %.1f]  LLR %.2f [%.2f, %.2f] (%.0f, %.0f)  %s",
+                games(), wins, losses, draws, elo(), ci[0], ci[1], llr(), lower, upper, elo0, elo1, state());
+        return lateGames == 0 ? res : res + "  (" + lateGames + " late games ignored)";
+    }
+
+    private double mean() {
+        int n = games();
+        return n == 0 ? 0.5 : (wins + draws / 2.0) / n;
+    }
+
+    private static double score(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
@@ -0,0 +1,378 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.PlayerType;
+
+import java.awt.Point;
+
+/**
+ * Representación compacta del tablero para la búsqueda.
+ *
+ * Cada jugador tiene su propio bitboard (un array de longs, 121 bits en 11x11)
+ * y el tablero se modifica in situ con {@link #play(int)} / {@link #undo()},
+ * de modo que toda la búsqueda trabaja sobre una única instancia construida a
+ * partir del {@link HexGameStatus} recibido, sin copiar el tablero por nodo.
+ *
+ * Los jugadores se identifican como 0 (PLAYER1, color 1) y 1 (PLAYER2, color -1).
+ *
+ * La conectividad se mantiene con un union-find incremental con dos nodos
+ * virtuales por jugador (sus dos bordes). Se une por tamaño y sin compresión de
+ * caminos, de modo que cada unión se deshace en O(1) desde un registro de
+ * rollback y {@link #isGameOver()} es una simple comparación de raíces.
+ *
+ * Las conexiones virtuales ({@link VirtualConnections}) se crean la primera vez
+ * que se piden y desde entonces se actualizan en cada play/undo.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class BitBoard {
+
+    public static final int NONE = -1;
+
+    final HexGeometry geo;
+    final long[][] stones;
+
+    private int toMove;
+    private int empties;
+    private long hash;
+    private int winner = NONE;
+    private int winPly = -1;
+
+    private final int[] history;
+    // Relleno de cada ply: 0 si es una jugada normal, 1 + jugador si es una casilla rellenada
+    private final byte[] fillOf;
+    private int ply;
+
+    // Union-find: casillas 0..cells-1 y bordes virtuales en cells + 2 * jugador + {0, 1}
+    private final int[] parent;
+    private final int[] setSize;
+    private final int[] unionLog;
+    private int logTop;
+    private final int[] logMark;
+
+    private VirtualConnections vc;
+
+    /**
+     * Construye el tablero de búsqueda a partir del estado del juego.
+     *
+     * @param s Estado actual del juego.
+     */
+    public BitBoard(HexGameStatus s) {
+        this.geo = HexGeometry.of(s.getSize());
+        this.stones = new long[2][geo.words];
+        this.history = new int[geo.cells];
+        this.fillOf = new byte[geo.cells];
+        this.parent = new int[geo.cells + 4];
+        this.setSize = new int[geo.cells + 4];
+        this.unionLog = new int[geo.cells * 8];
+        this.logMark = new int[geo.cells + 1];
+        this.toMove = PlayerType.to_01(s.getCurrentPlayer());
+
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            setSize[i] = 1;
+        }
+        for (int c = 0; c < geo.cells; c++) {
+            int color = s.getPos(geo.x(c), geo.y(c));
+            if (color == 0) empties++;
+            else {
+                set(color == 1 ? 0 : 1, c);
+                hash ^= geo.zobrist[(color == 1 ? 0 : geo.cells) + c];
+            }
+        }
+        if (toMove == 1) hash ^= geo.zobristSide;
+        for (int c = 0; c < geo.cells; c++) {
+            if (!isEmpty(c)) link(owns(0, c) ? 0 : 1, c);
+        }
+        // La posición inicial no se deshace nunca
+        logTop = 0;
+        if (s.isGameOver() && s.GetWinner() != null)
+            winner = PlayerType.to_01(s.GetWinner());
+    }
+
+    /**
+     * Constructor de copia, para dar a cada hilo su propio tablero.
+     *
+     * @param other Tablero a copiar.
+     */
+    public BitBoard(BitBoard other) {
+        this.geo = other.geo;
+        this.stones = new long[][]{other.stones[0].clone(), other.stones[1].clone()};
+        this.history = other.history.clone();
+        this.fillOf = other.fillOf.clone();
+        this.parent = other.parent.clone();
+        this.setSize = other.setSize.clone();
+        this.unionLog = other.unionLog.clone();
+        this.logTop = other.logTop;
+        this.logMark = other.logMark.clone();
+        this.toMove = other.toMove;
+        this.empties = other.empties;
+        this.hash = other.hash;
+        this.winner = other.winner;
+        this.winPly = other.winPly;
+        this.ply = other.ply;
+        if (other.vc != null) this.vc = new VirtualConnections(this, other.vc);
+    }
+
+    /**
+     * Copia en este tablero la posición de otro del mismo tamaño, reutilizando
+     * sus arrays (para no reservar un tablero nuevo por cada copia).
+     *
+     * @param other Tablero a copiar.
+     */
+    public void copyFrom(BitBoard other) {
+        System.arraycopy(other.stones[0], 0, stones[0], 0, geo.words);
+        System.arraycopy(other.stones[1], 0, stones[1], 0, geo.words);
+        // Del historial sólo cuentan los plies ya jugados
+        System.arraycopy(other.history, 0, history, 0, other.ply);
+        System.arraycopy(other.fillOf, 0, fillOf, 0, other.ply);
+        System.arraycopy(other.logMark, 0, logMark, 0, other.ply);
+        System.arraycopy(other.unionLog, 0, unionLog, 0, other.logTop);
+        System.arraycopy(other.parent, 0, parent, 0, parent.length);
+        System.arraycopy(other.setSize, 0, setSize, 0, setSize.length);
+        this.logTop = other.logTop;
+        this.toMove = other.toMove;
+        this.empties = other.empties;
+        this.hash = other.hash;
+        this.winner = other.winner;
+        this.winPly = other.winPly;
+        this.ply = other.ply;
+        if (other.vc == null) this.vc = null;
+        else if (this.vc == null) this.vc = new VirtualConnections(this, other.vc);
+        else this.vc.copyFrom(other.vc);
+    }
+
+    public HexGeometry getGeometry() {
+        return geo;
+    }
+
+    public int getSize() {
+        return geo.size;
+    }
+
+    public int getCells() {
+        return geo.cells;
+    }
+
+    public int getCurrentPlayer() {
+        return toMove;
+    }
+
+    public int getCurrentPlayerColor() {
+        return toMove == 0 ? 1 : -1;
+    }
+
+    /**
+     * Conexiones virtuales de la posición, calculadas la primera vez y
+     * mantenidas incrementalmente a partir de entonces.
+     */
+    public VirtualConnections getVirtualConnections() {
+        if (vc == null) vc = new VirtualConnections(this);
+        return vc;
+    }
+
+    public int getEmptyCount() {
+        return empties;
+    }
+
+    /**
+     * Hash Zobrist de la posición (piedras y turno), mantenido incrementalmente.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /** Número de piedras colocadas (jugadas o rellenadas) desde la construcción. */
+    public int getPly() {
+        return ply;
+    }
+
+    /** Última casilla jugada con {@link #play(int)}, o -1 si no hay ninguna o fue un relleno. */
+    int lastMove() {
+        return ply > 0 && fillOf[ply - 1] == 0 ? history[ply - 1] : -1;
+    }
+
+    public boolean isEmpty(int cell) {
+        return ((stones[0][cell >>> 6] | stones[1][cell >>> 6]) & (1L << cell)) == 0;
+    }
+
+    public boolean owns(int player, int cell) {
+        return (stones[player][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Color de la casilla con la misma convención que {@code HexGameStatus.getPos}.
+     *
+     * @return 1 para PLAYER1, -1 para PLAYER2, 0 si está vacía.
+     */
+    public int getPos(int cell) {
+        if (owns(0, cell)) return 1;
+        if (owns(1, cell)) return -1;
+        return 0;
+    }
+
+    public int getPos(int x, int y) {
+        return getPos(geo.index(x, y));
+    }
+
+    public int getPos(Point p) {
+        return getPos(geo.index(p.x, p.y));
+    }
+
+    public boolean isGameOver() {
+        return winner != NONE;
+    }
+
+    /** @return 0 o 1 si hay ganador, {@link #NONE} en otro caso. */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Coloca una piedra del jugador con el turno y pasa el turno.
+     *
+     * @param cell Casilla vacía.
+     */
+    public void play(int cell) {
+        int p = toMove;
+        hash ^= geo.zobristSide;
+        fillOf[ply] = 0;
+        place(p, cell);
+        toMove = 1 - p;
+    }
+
+    /**
+     * Rellena una casilla con una piedra del jugador sin pasar el turno (para
+     * casillas muertas o capturadas). Se deshace con {@link #undo()} como una
+     * jugada más.
+     *
+     * @param cell Casilla vacía.
+     * @param player Jugador al que se le da la casilla.
+     */
+    public void fill(int cell, int player) {
+        fillOf[ply] = (byte) (1 + player);
+        place(player, cell);
+    }
+
+    private void place(int p, int cell) {
+        set(p, cell);
+        hash ^= geo.zobrist[p * geo.cells + cell];
+        logMark[ply] = logTop;
+        history[ply++] = cell;
+        empties--;
+        link(p, cell);
+        if (vc != null) vc.refresh(cell);
+        if (winner == NONE && find(geo.cells + 2 * p) == find(geo.cells + 2 * p + 1)) {
+            winner = p;
+            winPly = ply;
+        }
+    }
+
+    /**
+     * Deshace la última piedra colocada con {@link #play(int)} o {@link #fill(int, int)}.
+     */
+    public void undo() {
+        if (winPly == ply) {
+            winner = NONE;
+            winPly = -1;
+        }
+        int cell = history[--ply];
+        int mark = logMark[ply];
+        while (logTop > mark) {
+            int child = unionLog[--logTop];
+            int root = parent[child];
+            setSize[root] -= setSize[child];
+            parent[child] = child;
+        }
+        int p;
+        if (fillOf[ply] == 0) {
+            toMove = 1 - toMove;
+            p = toMove;
+            hash ^= geo.zobristSide;
+        } else {
+            p = fillOf[ply] - 1;
+        }
+        stones[p][cell >>> 6] &= ~(1L << cell);
+        hash ^= geo.zobrist[p * geo.cells + cell];
+        empties++;
+        if (vc != null) vc.refresh(cell);
+    }
+
+    /**
+     * Escribe las casillas vacías en {@code out} en el orden de {@code getMoves()}.
+     *
+     * @param out Buffer de al menos {@link #getCells()} posiciones.
+     * @return Número de movimientos escritos.
+     */
+    public int getMoves(int[] out) {
+        int n = 0;
+        for (int w = 0; w < geo.words; w++) {
+            long free = ~(stones[0][w] | stones[1][w]);
+            while (free != 0) {
+                int c = (w << 6) + Long.numberOfTrailingZeros(free);
+                if (c >= geo.cells) break;
+                out[n++] = c;
+                free &= free - 1;
+            }
+        }
+        return n;
+    }
+
+    public Point toPoint(int cell) {
+        return new Point(geo.x(cell), geo.y(cell));
+    }
+
+    public int toCell(Point p) {
+        return geo.index(p.x, p.y);
+    }
+
+    private void set(int player, int cell) {
+        stones[player][cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Une la piedra con sus vecinos del mismo jugador y con los bordes que toca.
+     */
+    private void link(int player, int cell) {
+        int base = cell * 6;
+        for (int k = 0; k < geo.degree[cell]; k++) {
+            int nb = geo.neigh[base + k];
+            if (owns(player, nb)) union(cell, nb);
+        }
+        if (geo.onStartEdge(player, cell)) union(cell, geo.cells + 2 * player);
+        if (geo.onEndEdge(player, cell)) union(cell, geo.cells + 2 * player + 1);
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) i = parent[i];
+        return i;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) return;
+        if (setSize[a] < setSize[b]) {
+            int t = a; a = b; b = t;
+        }
+        parent[b] = a;
+        setSize[a] += setSize[b];
+        unionLog[logTop++] = b;
+    }
+
+    /**
+     * Representante del grupo de una casilla ocupada o de un borde virtual
+     * ({@code cells + 2 * jugador + lado}); el mismo para todo el grupo.
+     */
+    int group(int i) {
+        return find(i);
+    }
+
+    /**
+     * Indica si dos casillas (o bordes virtuales) están en el mismo grupo.
+     */
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+}
@@ -0,0 +1,250 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Solver exacto con Depth-First Proof-Number search (DFPN) para finales y
+ * tableros pequeños.
+ *
+ * Cada nodo tiene un número de prueba (pn, coste estimado de demostrar que
+ * gana el jugador con el turno) y uno de refutación (dn, de demostrar que
+ * pierde), ambos desde el punto de vista de ese jugador: pn del padre es el
+ * mínimo dn de los hijos y dn del padre la suma de sus pn. Se baja siempre por
+ * el hijo más prometedor con umbrales que indican cuándo deja de serlo (con el
+ * margen 1 + 1/4 para el umbral del segundo mejor, que evita saltar de un hijo
+ * a otro continuamente) y los valores se guardan en una tabla de
+ * transposiciones propia, que se conserva entre llamadas.
+ *
+ * En cada nodo se rellenan antes las casillas muertas y capturadas
+ * ({@link InferiorCells}) y una jugada que gana directamente lo demuestra sin
+ * expandir nada más.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class DfpnSolver {
+
+    /** Valor infinito de pn y dn: demostrado o refutado. */
+    static final int INF = 100_000_000;
+
+    /** Memoria por defecto de la tabla de transposiciones, en MB. */
+    public static final int DEFAULT_TT_MB = 16;
+
+    // Clave, pn, dn y trabajo (nodos expandidos por debajo) de cada entrada;
+    // dos entradas por cubeta: la de más trabajo y la más reciente
+    private static final int ENTRY_BYTES = 24;
+    private final long[] keys;
+    private final int[] pns;
+    private final int[] dns;
+    private final long[] works;
+    private final int mask;
+
+    private final InferiorCells inferior = new InferiorCells();
+    private int[][] moveBuffers = new int[0][];
+
+    private BitBoard board;
+    private BooleanSupplier stop;
+    private long maxNodes;
+    private long nodes;
+    private int depth;
+    private boolean aborted;
+    private int bestMove = -1;
+
+    // Resultado de lookup()
+    private int foundPn;
+    private int foundDn;
+    private long foundWork;
+
+    /**
+     * @param megabytes Memoria de la tabla de transposiciones, en MB.
+     */
+    public DfpnSolver(int megabytes) {
+        long entries = Math.max(2L, ((long) megabytes << 20) / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 26));
+        this.keys = new long[buckets * 2];
+        this.pns = new int[buckets * 2];
+        this.dns = new int[buckets * 2];
+        this.works = new long[buckets * 2];
+        this.mask = buckets - 1;
+    }
+
+    /**
+     * Intenta resolver la posición.
+     *
+     * @param b Tablero de búsqueda (no terminado); se deja como estaba.
+     * @param maxNodes Nodos que se pueden expandir como máximo.
+     * @param stop Condición de parada externa (timeout), o null.
+     * @return El jugador (0 o 1) que gana con juego perfecto, o
+     *         {@link BitBoard#NONE} si no se ha resuelto dentro del límite.
+     */
+    public int solve(BitBoard b, long maxNodes, BooleanSupplier stop) {
+        if (moveBuffers.length < b.getCells() + 1) moveBuffers = new int[b.getCells() + 1][b.getCells()];
+        this.board = b;
+        this.stop = stop;
+        this.maxNodes = maxNodes;
+        this.nodes = 0;
+        this.depth = 0;
+        this.aborted = false;
+        this.bestMove = -1;
+
+        // Las jugadas se eligen sobre el tablero rellenado, que tiene el mismo
+        // valor; si el relleno ya decide la partida se resuelve sin él
+        int filled = inferior.fillIn(b);
+        if (b.isGameOver()) {
+            for (; filled > 0; filled--) b.undo();
+        }
+        int mover = b.getCurrentPlayer();
+        mid(INF, INF, 0);
+
+        int winner = BitBoard.NONE;
+        if (lookup(b.getHash()) && (foundPn == 0 || foundDn == 0)) {
+            winner = foundPn == 0 ? mover : 1 - mover;
+            bestMove = rootMove(foundPn == 0);
+        }
+        for (; filled > 0; filled--) b.undo();
+        board = null;
+        this.stop = null;
+        return winner;
+    }
+
+    /**
+     * Jugada de la última posición resuelta: una ganadora si gana el jugador
+     * con el turno y, si pierde, la que más ha costado refutar (la que más
+     * resiste).
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /** Nodos expandidos en la última llamada a {@link #solve}. */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Profundidad máxima, en jugadas desde la raíz, a la que ha llegado la
+     * última llamada a {@link #solve} (contando la jugada que gana directamente).
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Expande el nodo actual hasta que su pn alcance {@code thpn} o su dn
+     * alcance {@code thdn}, y guarda el resultado en la tabla.
+     */
+    private void mid(int thpn, int thdn, int ply) {
+        long key = board.getHash();
+        long work = nodes++;
+        if (ply > depth) depth = ply;
+        if ((nodes & 1023) == 0 && (nodes >= maxNodes || (stop != null && stop.getAsBoolean())))
+            aborted = true;
+
+        int filled = inferior.fillAround(board, board.lastMove());
+        int mover = board.getCurrentPlayer();
+        if (board.isGameOver()) {
+            boolean won = board.getWinner() == mover;
+            store(key, won ? 0 : INF, won ? INF : 0, 1);
+            for (; filled > 0; filled--) board.undo();
+            return;
+        }
+
+        int[] moves = moveBuffers[ply];
+        int nMoves = board.getMoves(moves);
+        for (int i = 0; i < nMoves; i++) {
+            board.play(moves[i]);
+            boolean wins = board.isGameOver();
+            board.undo();
+            if (wins) {
+                if (ply + 1 > depth) depth = ply + 1;
+                store(key, 0, INF, 1);
+                for (; filled > 0; filled--) board.undo();
+                return;
+            }
+        }
+
+        long base = board.getHash() ^ board.geo.zobristSide;
+        long[] zobrist = board.geo.zobrist;
+        int offset = mover * board.getCells();
+        int pn = 1, dn = 1;
+        while (!aborted) {
+            pn = INF;
+            dn = 0;
+            int best = -1, bestPn = 0, dn2 = INF;
+            for (int i = 0; i < nMoves; i++) {
+                int cpn = 1, cdn = 1;
+                if (lookup(base ^ zobrist[offset + moves[i]])) {
+                    cpn = foundPn;
+                    cdn = foundDn;
+                }
+                dn = Math.min(INF, dn + cpn);
+                if (cdn < pn) {
+                    dn2 = pn;
+                    pn = cdn;
+                    best = i;
+                    bestPn = cpn;
+                } else if (cdn < dn2) {
+                    dn2 = cdn;
+                }
+            }
+            if (pn >= thpn || dn >= thdn) break;
+
+            int childThpn = Math.min(INF, thdn - dn + bestPn);
+            int childThdn = Math.min(thpn, dn2 >= INF ? INF : dn2 + 1 + dn2 / 4);
+            board.play(moves[best]);
+            mid(childThpn, childThdn, ply + 1);
+            board.undo();
+        }
+        store(key, pn, dn, nodes - work);
+        for (; filled > 0; filled--) board.undo();
+    }
+
+    /**
+     * Jugada de la raíz resuelta: un hijo refutado para el rival si se gana, o
+     * el hijo con más trabajo si se pierde.
+     */
+    private int rootMove(boolean win) {
+        int[] moves = moveBuffers[0];
+        int nMoves = board.getMoves(moves);
+        long base = board.getHash() ^ board.geo.zobristSide;
+        int offset = board.getCurrentPlayer() * board.getCells();
+        int best = nMoves > 0 ? moves[0] : -1;
+        long bestWork = -1;
+        for (int i = 0; i < nMoves; i++) {
+            board.play(moves[i]);
+            boolean over = board.isGameOver();
+            board.undo();
+            if (win && over) return moves[i];
+            if (!lookup(base ^ board.geo.zobrist[offset + moves[i]])) continue;
+            if (win && foundDn == 0) return moves[i];
+            if (!win && foundWork > bestWork) {
+                bestWork = foundWork;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    private boolean lookup(long key) {
+        // Toda entrada escrita tiene trabajo positivo: así la clave 0 no coincide con una vacía
+        int i = ((int) key & mask) << 1;
+        if (keys[i] != key || works[i] == 0) {
+            i++;
+            if (keys[i] != key || works[i] == 0) return false;
+        }
+        foundPn = pns[i];
+        foundDn = dns[i];
+        foundWork = works[i];
+        return true;
+    }
+
+    private void store(long key, int pn, int dn, long work) {
+        int i = ((int) key & mask) << 1;
+        // La primera entrada sólo la sustituye un resultado con más trabajo
+        if (keys[i] != key && works[i] > work) i++;
+        keys[i] = key;
+        pns[i] = pn;
+        dns[i] = dn;
+        works[i] = work;
+    }
+}
@@ -0,0 +1,26 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Heurística original de Sexagono: diferencia de distancias más cortas entre
+ * los bordes de cada jugador, calculadas con {@link ShortestPath}.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class DijkstraEvaluator implements Evaluator {
+
+    @Override
+    public int evaluate(BitBoard board, int player) {
+
+        int myDistance = ShortestPath.distance(board, player);
+        int opponentDistance = ShortestPath.distance(board, 1 - player);
+
+        int connectivityScore = (opponentDistance - myDistance) * 10;
+        return -myDistance + connectivityScore;
+    }
+
+    @Override
+    public String getName() {
+        return "dijkstra";
+    }
+}
@@ -0,0 +1,31 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Función de evaluación heurística de las hojas de la búsqueda de Sexagono.
+ *
+ * Las implementaciones se pueden llamar desde varios hilos y deben devolver
+ * siempre el mismo valor para la misma posición, sean cuales sean las llamadas
+ * anteriores (la tabla de transposiciones guarda los valores): el estado que
+ * guarden entre llamadas sólo puede servir para calcular más deprisa. Tampoco
+ * pueden devolver {@code Integer.MAX_VALUE} / {@code Integer.MIN_VALUE}, que la
+ * búsqueda reserva para las victorias y derrotas seguras.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public interface Evaluator {
+
+    /**
+     * Evalúa la posición desde el punto de vista de un jugador.
+     *
+     * @param board Tablero de búsqueda (no terminal).
+     * @param player Jugador para el que se evalúa (0 o 1).
+     * @return Valor heurístico, mayor cuanto mejor para {@code player}.
+     */
+    int evaluate(BitBoard board, int player);
+
+    /**
+     * @return Nombre corto de la heurística.
+     */
+    String getName();
+}
@@ -0,0 +1,546 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * H-search: cálculo de conexiones virtuales (VC) y semiconexiones (SC) de
+ * ambos jugadores combinando las de los pasos anteriores con las reglas AND y
+ * OR de Anshelevich.
+ *
+ * Los extremos son casillas vacías y grupos de piedras (los bordes cuentan como
+ * grupos). Dos extremos vecinos forman una VC con carrier vacío. Regla AND: dos
+ * VC x-z y z-y con carriers disjuntos dan una VC x-y si z es un grupo propio o
+ * una SC x-y con llave z si z está vacía. Regla OR: varias SC x-y cuya
+ * intersección de carriers es vacía dan una VC x-y con la unión como carrier.
+ *
+ * Una VC entre los dos bordes de un jugador demuestra que gana aunque juegue el
+ * rival; una SC, que gana si le toca jugar. Así la búsqueda puede cortar
+ * subárboles enteros mucho antes de que la partida termine.
+ *
+ * El cálculo es incremental a lo largo de play/undo: cada ply del tablero tiene
+ * su región en un arena compartido y, si la región del ply anterior es la de
+ * la posición padre, se hereda filtrada por la última jugada (las conexiones
+ * del que ha jugado siguen valiendo, las del rival que pasan por la casilla se
+ * pierden) y sólo se combinan de nuevo las que han cambiado. El trabajo de cada
+ * nodo (combinaciones probadas) está limitado por un presupuesto; lo que queda
+ * pendiente lo continúan los hijos.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class HSearch {
+
+    /** Combinaciones por jugador y nodo por defecto. */
+    public static final int DEFAULT_BUDGET = 2000;
+
+    /** Límites de VC y SC guardadas por pareja de extremos. */
+    static final int MAX_VC_PER_PAIR = 4;
+    static final int MAX_SC_PER_PAIR = 8;
+    /** Máximo de SC combinadas por la regla OR. */
+    static final int MAX_OR = 4;
+    /** Máximo de conexiones por región, para acotar la memoria y la copia. */
+    static final int MAX_REGION = 12_000;
+
+    private static final byte PROCESSED = 1;
+    private static final byte PLAYER1 = 2;
+
+    private final int budget;
+
+    private HexGeometry geo;
+    private int cells;
+    private int words;
+    private int n;
+
+    // Arena de conexiones de todas las regiones
+    private int[] eA = new int[0];
+    private int[] eB;
+    private int[] eKey;
+    private int[] eNextPair;
+    private int[] eNextA;
+    private int[] eNextB;
+    private byte[] eFlags;
+    private long[] eCar;
+    private int top;
+    private int regionLimit;
+
+    // Región de cada ply del tablero
+    private int[] regStart;
+    private int[] regEnd;
+    private long[] regHash;
+    private boolean[] regValid;
+    private int highest = -1;
+
+    // Índices de la región en curso, reiniciados por marca de generación
+    // Cuatro enteros por pareja: marca, primera VC, primera SC y número de VC y SC
+    private int[] pairs;
+    private int[] nodeHead;
+    private int[] nodeStamp;
+    private int stamp;
+
+    private int[] queue = new int[1024];
+    private int qHead;
+    private int qTail;
+    private long[] tmp;
+    private long[][] orI;
+    private long[][] orU;
+    private long[] orOut;
+    private final int[] scBuf = new int[MAX_SC_PER_PAIR];
+
+    private BitBoard board;
+    private int player;
+    private int toMove;
+    private int edgeLo;
+    private int edgeHi;
+    // Bordes del rival del jugador con el turno en la última llamada a prove
+    private int threatLo;
+    private int threatHi;
+    private int work;
+    private boolean aborted;
+    private boolean proved;
+    private long totalWork;
+
+    /**
+     * @param budget Combinaciones AND/OR que se pueden probar por jugador en
+     *               cada llamada a {@link #prove(BitBoard)}.
+     */
+    public HSearch(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Busca una conexión ganadora entre los bordes de alguno de los jugadores.
+     *
+     * @param b Tablero de búsqueda (no terminado).
+     * @return El jugador (0 o 1) que tiene la victoria demostrada: el que tiene
+     *         el turno con una SC o VC, o el otro con una VC. {@link BitBoard#NONE}
+     *         si no se ha encontrado ninguna dentro del presupuesto.
+     */
+    public int prove(BitBoard b) {
+        if (geo != b.geo) init(b.geo);
+        board = b;
+        toMove = b.getCurrentPlayer();
+
+        int k = b.getPly();
+        int below = k - 1;
+        while (below >= 0 && !regValid[below]) below--;
+        int start = below >= 0 ? regEnd[below] : 0;
+        boolean inherit = below == k - 1 && b.lastMove() >= 0 && regHash[k - 1] == parentHash(b);
+        for (int j = k; j <= highest; j++) regValid[j] = false;
+        highest = Math.min(highest, k - 1);
+
+        top = start;
+        regionLimit = start + MAX_REGION;
+        if (++stamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(pairs, 0);
+            java.util.Arrays.fill(nodeStamp, 0);
+            stamp = 1;
+        }
+
+        int result = BitBoard.NONE;
+        for (int i = 0; i < 2 && result == BitBoard.NONE; i++) {
+            player = i == 0 ? toMove : 1 - toMove;
+            int e0 = b.group(cells + 2 * player), e1 = b.group(cells + 2 * player + 1);
+            edgeLo = Math.min(e0, e1);
+            edgeHi = Math.max(e0, e1);
+            threatLo = edgeLo;
+            threatHi = edgeHi;
+            proved = false;
+            aborted = false;
+            work = 0;
+            qHead = qTail = 0;
+            if (inherit) inherit(regStart[k - 1], regEnd[k - 1], b.lastMove(), 1 - toMove);
+            else base();
+            closure();
+            totalWork += work;
+            if (proved) result = player;
+        }
+
+        if (k < regValid.length) {
+            regStart[k] = start;
+            regEnd[k] = top;
+            regHash[k] = b.getHash();
+            regValid[k] = true;
+            highest = k;
+        }
+        board = null;
+        return result;
+    }
+
+    /**
+     * Mustplay del jugador con el turno tras una llamada a {@link #prove(BitBoard)}
+     * sin ganador: la intersección de los carriers (llave incluida) de las SC
+     * del rival entre sus dos bordes. Una jugada fuera de ella deja intacta
+     * alguna SC y el rival gana jugando su llave.
+     *
+     * @param out Máscara de casillas de {@code words} longs donde se escribe.
+     * @return false si el rival no tiene ninguna SC entre sus bordes y no hay
+     *         que restringir nada.
+     */
+    public boolean mustplay(long[] out) {
+        int pi = 4 * (((1 - toMove) * n + threatLo) * n + threatHi);
+        if (pairs[pi] != stamp || pairs[pi + 2] < 0) return false;
+        java.util.Arrays.fill(out, 0, words, -1L);
+        for (int e = pairs[pi + 2]; e >= 0; e = eNextPair[e]) {
+            for (int w = 0; w < words; w++) out[w] &= eCar[e * words + w];
+        }
+        return true;
+    }
+
+    /** Combinaciones probadas desde que se creó el objeto. */
+    public long getTotalWork() {
+        return totalWork;
+    }
+
+    private void init(HexGeometry g) {
+        geo = g;
+        cells = g.cells;
+        words = g.words;
+        n = cells + 4;
+        pairs = new int[4 * 2 * n * n];
+        nodeHead = new int[2 * n];
+        nodeStamp = new int[2 * n];
+        stamp = 0;
+        regStart = new int[cells + 1];
+        regEnd = new int[cells + 1];
+        regHash = new long[cells + 1];
+        regValid = new boolean[cells + 1];
+        highest = -1;
+        tmp = new long[words];
+        orI = new long[MAX_OR][words];
+        orU = new long[MAX_OR][words];
+        orOut = new long[words];
+        grow(4096);
+    }
+
+    private long parentHash(BitBoard b) {
+        int last = b.lastMove();
+        return b.getHash() ^ geo.zobrist[(1 - b.getCurrentPlayer()) * cells + last] ^ geo.zobristSide;
+    }
+
+    /**
+     * Extremo del jugador en curso que contiene la casilla o borde virtual, o
+     * -1 si es una piedra rival.
+     */
+    private int node(int id) {
+        if (id >= cells) return board.group(id);
+        if (board.isEmpty(id)) return id;
+        return board.owns(player, id) ? board.group(id) : -1;
+    }
+
+    private boolean isEmptyNode(int node) {
+        return node < cells && board.isEmpty(node);
+    }
+
+    // ---------------------------------------------------------------- regiones
+
+    /**
+     * VC de carrier vacío entre extremos vecinos.
+     */
+    private void base() {
+        java.util.Arrays.fill(tmp, 0L);
+        for (int c = 0; c < cells; c++) {
+            if (!board.isEmpty(c)) continue;
+            for (int k = 0; k < geo.degree[c]; k++) {
+                int nb = geo.neigh[c * 6 + k];
+                if (board.isEmpty(nb)) {
+                    if (nb > c) addVc(c, nb, tmp, 0, false);
+                } else if (board.owns(player, nb)) {
+                    addVc(c, board.group(nb), tmp, 0, false);
+                }
+            }
+            if (geo.onStartEdge(player, c)) addVc(c, board.group(cells + 2 * player), tmp, 0, false);
+            if (geo.onEndEdge(player, c)) addVc(c, board.group(cells + 2 * player + 1), tmp, 0, false);
+        }
+    }
+
+    /**
+     * Copia las conexiones del jugador en curso de la región padre que siguen
+     * valiendo tras la jugada {@code cell} de {@code mover}.
+     */
+    private void inherit(int from, int to, int cell, int mover) {
+        byte mine = player == 1 ? PLAYER1 : 0;
+        int moved = mover == player ? board.group(cell) : -1;
+        int w = cell >>> 6;
+        long bit = 1L << cell;
+        for (int e = from; e < to; e++) {
+            if ((eFlags[e] & PLAYER1) != mine) continue;
+            int a = node(eA[e]), b = node(eB[e]);
+            if (a < 0 || b < 0 || a == b) continue;
+            System.arraycopy(eCar, e * words, tmp, 0, words);
+            int key = eKey[e];
+            boolean pending = (eFlags[e] & PROCESSED) == 0;
+            boolean changed = a == moved || b == moved;
+            if ((tmp[w] & bit) != 0) {
+                if (mover != player) continue;
+                // Una piedra propia en el carrier sólo ayuda; si es la llave, la SC pasa a VC
+                tmp[w] &= ~bit;
+                if (key == cell) key = -1;
+                changed = true;
+            }
+            if (!changed) append(a, b, key, tmp, pending);
+            else if (key < 0) addVc(a, b, tmp, 0, false);
+            else addSc(a, b, key, tmp, 0, false);
+            if (top >= regionLimit) return;
+        }
+    }
+
+    // ---------------------------------------------------------------- reglas
+
+    private void closure() {
+        while (qHead < qTail && !proved) {
+            int x = queue[qHead++];
+            if ((eFlags[x] & PROCESSED) != 0) continue;
+            eFlags[x] |= PROCESSED;
+            and(x);
+            if (aborted) {
+                eFlags[x] &= ~PROCESSED;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Regla AND de una VC nueva con todas las VC que comparten un extremo.
+     */
+    private void and(int e) {
+        int offE = e * words;
+        for (int side = 0; side < 2; side++) {
+            int z = side == 0 ? eA[e] : eB[e];
+            int x = side == 0 ? eB[e] : eA[e];
+            boolean zEmpty = isEmptyNode(z);
+            boolean xEmpty = isEmptyNode(x);
+            for (int f = head(z); f >= 0; f = eA[f] == z ? eNextA[f] : eNextB[f]) {
+                if (f == e) continue;
+                int y = eA[f] == z ? eB[f] : eA[f];
+                if (y == x) continue;
+                if (++work > budget || top >= regionLimit) {
+                    aborted = true;
+                    return;
+                }
+                int offF = f * words;
+                boolean ok = true;
+                for (int i = 0; i < words && ok; i++) {
+                    long u = eCar[offE + i] | eCar[offF + i];
+                    ok = (eCar[offE + i] & eCar[offF + i]) == 0;
+                    tmp[i] = u;
+                }
+                if (!ok) continue;
+                if (xEmpty && inCarrier(offF, x)) continue;
+                if (isEmptyNode(y) && inCarrier(offE, y)) continue;
+                if (zEmpty) {
+                    tmp[z >>> 6] |= 1L << z;
+                    addSc(x, y, z, tmp, 0, false);
+                } else {
+                    addVc(x, y, tmp, 0, false);
+                }
+                if (proved) return;
+            }
+        }
+    }
+
+    /**
+     * Regla OR: busca un subconjunto de las SC de la pareja que, junto con la
+     * nueva, tenga intersección de carriers vacía.
+     */
+    private void or(int a, int b, int pi, long[] car, int off) {
+        int count = 0;
+        for (int s = pairs[pi + 2]; s >= 0; s = eNextPair[s]) scBuf[count++] = s;
+        if (count == 0) return;
+        System.arraycopy(car, off, orI[0], 0, words);
+        System.arraycopy(car, off, orU[0], 0, words);
+        or(a, b, count, 0, 0);
+    }
+
+    private boolean or(int a, int b, int count, int from, int depth) {
+        long[] in = orI[depth], un = orU[depth];
+        for (int i = from; i < count; i++) {
+            if (++work > budget) return false;
+            int off = scBuf[i] * words;
+            boolean empty = true, shrinks = false;
+            for (int w = 0; w < words; w++) {
+                long x = in[w] & eCar[off + w];
+                empty &= x == 0;
+                shrinks |= x != in[w];
+            }
+            if (empty) {
+                for (int w = 0; w < words; w++) orOut[w] = un[w] | eCar[off + w];
+                addVc(a, b, orOut, 0, false);
+                return true;
+            }
+            if (shrinks && depth + 2 < MAX_OR) {
+                long[] nextI = orI[depth + 1], nextU = orU[depth + 1];
+                for (int w = 0; w < words; w++) {
+                    nextI[w] = in[w] & eCar[off + w];
+                    nextU[w] = un[w] | eCar[off + w];
+                }
+                if (or(a, b, count, i + 1, depth + 1)) return true;
+            }
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------- listas
+
+    private int pair(int a, int b) {
+        int pi = 4 * ((player * n + a) * n + b);
+        if (pairs[pi] != stamp) {
+            pairs[pi] = stamp;
+            pairs[pi + 1] = pairs[pi + 2] = -1;
+            pairs[pi + 3] = 0;
+        }
+        return pi;
+    }
+
+    private int head(int node) {
+        int ni = player * n + node;
+        if (nodeStamp[ni] != stamp) {
+            nodeStamp[ni] = stamp;
+            nodeHead[ni] = -1;
+        }
+        return nodeHead[ni];
+    }
+
+    /**
+     * Añade una VC si no hay otra de la pareja con carrier contenido en el suyo;
+     * si la nueva mejora a una existente, la sustituye.
+     *
+     * @param done Si ya se ha combinado con el resto (heredada sin cambios).
+     */
+    private void addVc(int a, int b, long[] car, int off, boolean done) {
+        if (a > b) {
+            int t = a; a = b; b = t;
+        }
+        int pi = pair(a, b);
+        for (int e = pairs[pi + 1]; e >= 0; e = eNextPair[e]) {
+            if (subset(eCar, e * words, car, off)) return;
+        }
+        boolean replaced = false;
+        for (int e = pairs[pi + 1]; e >= 0; e = eNextPair[e]) {
+            if (subset(car, off, eCar, e * words)) {
+                System.arraycopy(car, off, eCar, e * words, words);
+                if ((eFlags[e] & PROCESSED) != 0) {
+                    eFlags[e] &= ~PROCESSED;
+                    push(e);
+                }
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            if ((pairs[pi + 3] & 0xFF) >= MAX_VC_PER_PAIR || top >= regionLimit) return;
+            int e = newEntry(a, b, -1, car, off, done);
+            eNextPair[e] = pairs[pi + 1];
+            pairs[pi + 1] = e;
+            pairs[pi + 3]++;
+            int na = player * n + a, nb = player * n + b;
+            eNextA[e] = head(a);
+            nodeHead[na] = e;
+            eNextB[e] = head(b);
+            nodeHead[nb] = e;
+            if (!done) push(e);
+        }
+        if (a == edgeLo && b == edgeHi) proved = true;
+    }
+
+    /**
+     * Añade una SC si no la domina ninguna conexión de la pareja y prueba la
+     * regla OR con las SC que ya había.
+     */
+    private void addSc(int a, int b, int key, long[] car, int off, boolean done) {
+        if (a > b) {
+            int t = a; a = b; b = t;
+        }
+        int pi = pair(a, b);
+        for (int e = pairs[pi + 1]; e >= 0; e = eNextPair[e]) {
+            if (subset(eCar, e * words, car, off)) return;
+        }
+        for (int e = pairs[pi + 2]; e >= 0; e = eNextPair[e]) {
+            if (subset(eCar, e * words, car, off)) return;
+        }
+        if (a == edgeLo && b == edgeHi && player == toMove) proved = true;
+        if (!done) or(a, b, pi, car, off);
+        if (proved || pairs[pi + 3] >>> 8 >= MAX_SC_PER_PAIR || top >= regionLimit) return;
+        int e = newEntry(a, b, key, car, off, true);
+        eNextPair[e] = pairs[pi + 2];
+        pairs[pi + 2] = e;
+        pairs[pi + 3] += 1 << 8;
+    }
+
+    /**
+     * Añade una conexión heredada sin cambios: ya no estaba dominada en la
+     * región padre, así que no se compara con las demás.
+     *
+     * @param pending Si la región padre no llegó a combinarla.
+     */
+    private void append(int a, int b, int key, long[] car, boolean pending) {
+        if (a > b) {
+            int t = a; a = b; b = t;
+        }
+        int pi = pair(a, b);
+        if (key < 0) {
+            if ((pairs[pi + 3] & 0xFF) >= MAX_VC_PER_PAIR) return;
+            int e = newEntry(a, b, -1, car, 0, !pending);
+            eNextPair[e] = pairs[pi + 1];
+            pairs[pi + 1] = e;
+            pairs[pi + 3]++;
+            eNextA[e] = head(a);
+            nodeHead[player * n + a] = e;
+            eNextB[e] = head(b);
+            nodeHead[player * n + b] = e;
+            if (pending) push(e);
+            if (a == edgeLo && b == edgeHi) proved = true;
+        } else {
+            if (pairs[pi + 3] >>> 8 >= MAX_SC_PER_PAIR) return;
+            int e = newEntry(a, b, key, car, 0, true);
+            eNextPair[e] = pairs[pi + 2];
+            pairs[pi + 2] = e;
+            pairs[pi + 3] += 1 << 8;
+            if (a == edgeLo && b == edgeHi && player == toMove) proved = true;
+        }
+    }
+
+    private int newEntry(int a, int b, int key, long[] car, int off, boolean done) {
+        if (top == eA.length) grow(eA.length * 2);
+        int e = top++;
+        eA[e] = a;
+        eB[e] = b;
+        eKey[e] = key;
+        eFlags[e] = (byte) ((player == 1 ? PLAYER1 : 0) | (done ? PROCESSED : 0));
+        System.arraycopy(car, off, eCar, e * words, words);
+        return e;
+    }
+
+    private void push(int e) {
+        if (qTail == queue.length) {
+            if (qHead > 0) {
+                System.arraycopy(queue, qHead, queue, 0, qTail - qHead);
+                qTail -= qHead;
+                qHead = 0;
+            } else {
+                queue = java.util.Arrays.copyOf(queue, queue.length * 2);
+            }
+        }
+        queue[qTail++] = e;
+    }
+
+    private void grow(int capacity) {
+        eA = java.util.Arrays.copyOf(eA, capacity);
+        eB = eB == null ? new int[capacity] : java.util.Arrays.copyOf(eB, capacity);
+        eKey = eKey == null ? new int[capacity] : java.util.Arrays.copyOf(eKey, capacity);
+        eNextPair = eNextPair == null ? new int[capacity] : java.util.Arrays.copyOf(eNextPair, capacity);
+        eNextA = eNextA == null ? new int[capacity] : java.util.Arrays.copyOf(eNextA, capacity);
+        eNextB = eNextB == null ? new int[capacity] : java.util.Arrays.copyOf(eNextB, capacity);
+        eFlags = eFlags == null ? new byte[capacity] : java.util.Arrays.copyOf(eFlags, capacity);
+        eCar = eCar == null ? new long[capacity * words] : java.util.Arrays.copyOf(eCar, capacity * words);
+    }
+
+    private boolean inCarrier(int off, int cell) {
+        return (eCar[off + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    /** Indica si el carrier {@code a} está contenido en {@code b}. */
+    private boolean subset(long[] a, int offA, long[] b, int offB) {
+        for (int i = 0; i < words; i++) {
+            if ((a[offA + i] & ~b[offB + i]) != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,320 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Tablas precalculadas de la geometría de un tablero Hex de un tamaño dado.
+ *
+ * Las casillas se indexan de forma plana como {@code x * size + y}, el mismo
+ * orden en el que {@code HexGameStatus.getMoves()} devuelve los movimientos.
+ * Las vecindades coinciden con {@code HexGameStatus.getNeigh(Point)}.
+ *
+ * Las instancias son inmutables y se comparten entre todos los tableros del
+ * mismo tamaño.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class HexGeometry {
+
+    /** Desplazamientos (dx, dy) de los seis vecinos, en el orden de getNeigh. */
+    static final int[][] NEIGH_OFFSETS = {
+        {-1, 0}, {1, 0}, {0, -1}, {1, -1}, {0, 1}, {-1, 1}
+    };
+
+    /**
+     * Los mismos seis vecinos en orden cíclico: dos consecutivos (también el
+     * último y el primero) son vecinos entre sí.
+     */
+    static final int[][] RING_OFFSETS = {
+        {1, 0}, {1, -1}, {0, -1}, {-1, 0}, {-1, 1}, {0, 1}
+    };
+
+    /** Desplazamientos de los seis puentes y de la casilla que bloquea cada uno. */
+    static final int[][] BRIDGE_OFFSETS = {
+        {-2, 1}, {2, -1}, {1, 1}, {-1, -1}, {1, -2}, {-1, 2}
+    };
+    static final int[][] BRIDGE_BLOCKS = {
+        {1, -1}, {1, 0}, {0, 1}, {-1, 1}, {-1, 0}, {0, -1}
+    };
+
+    /**
+     * Plantillas de borde: casillas (dx, dy) que deben quedar libres de piedras
+     * rivales para que una piedra a distancia {@code TEMPLATE_ROWS[t]} del borde
+     * x = 0 esté conectada a él (dx negativo hacia el borde). Se obtienen para
+     * los demás bordes por simetría y cada una se usa también reflejada.
+     */
+    static final int[][][] TEMPLATE_SHAPES = {
+        // II: puente al borde
+        {{-1, 0}, {-1, 1}},
+        // IIIa: ziggurat
+        {{0, 1}, {-1, 0}, {-1, 1}, {-1, 2}, {-2, 0}, {-2, 1}, {-2, 2}, {-2, 3}},
+    };
+    static final int[] TEMPLATE_ROWS = {1, 2};
+
+    private static final HexGeometry[] CACHE = new HexGeometry[64];
+
+    public final int size;
+    public final int cells;
+    /** Número de longs necesarios para un bitboard de todas las casillas. */
+    public final int words;
+    /** Vecinos de cada casilla: {@code neigh[cell * 6 + k]}, -1 si está fuera. */
+    public final int[] neigh;
+    /** Número de vecinos válidos de cada casilla (compactados al principio). */
+    public final byte[] degree;
+    /**
+     * Vecinos de cada casilla en el orden de {@link #RING_OFFSETS}:
+     * {@code ring[cell * 6 + k]}. Fuera del tablero vale {@link #RING_EDGE_0}
+     * o {@link #RING_EDGE_1} según el borde que se toca, y {@link #RING_CORNER}
+     * en la esquina que queda entre los dos.
+     */
+    public final int[] ring;
+    public static final int RING_EDGE_0 = -1;
+    public static final int RING_EDGE_1 = -2;
+    public static final int RING_CORNER = -3;
+    /** Destino de cada puente: {@code bridge[cell * 6 + k]}, -1 si está fuera. */
+    public final int[] bridge;
+    /** Casilla que bloquea cada puente, -1 si está fuera del tablero. */
+    public final int[] bridgeBlock;
+    /** Las dos casillas comunes (carrier) de cada puente: {@code bridgeCarrier[cell * 12 + 2 * k + {0, 1}]}. */
+    public final int[] bridgeCarrier;
+    /**
+     * Puentes que usan cada casilla como carrier, en formato CSR: los de la
+     * casilla c son {@code carrierBridges[carrierBridgesStart[c] .. carrierBridgesStart[c + 1] - 1]},
+     * cada uno como {@code a * 6 + k} con a menor que su destino.
+     */
+    public final int[] carrierBridgesStart;
+    public final int[] carrierBridges;
+    /** Número de plantillas de borde que caben en el tablero, de ambos jugadores. */
+    public final int templates;
+    /** Piedra de cada plantilla. */
+    public final int[] templateAnchor;
+    /** Jugador (0 o 1) y borde (0 inicial, 1 final) de cada plantilla. */
+    public final byte[] templatePlayer;
+    public final byte[] templateSide;
+    /** Carrier de cada plantilla en CSR y como máscara de {@link #words} longs. */
+    public final int[] templateCarrierStart;
+    public final int[] templateCarrier;
+    public final long[] templateMask;
+    /** Plantillas en las que participa cada casilla (como piedra o carrier), en CSR. */
+    public final int[] cellTemplatesStart;
+    public final int[] cellTemplates;
+    /** Claves Zobrist: {@code zobrist[player * cells + cell]}. */
+    public final long[] zobrist;
+    /** Clave Zobrist del turno de PLAYER2. */
+    public final long zobristSide;
+
+    private HexGeometry(int size) {
+        this.size = size;
+        this.cells = size * size;
+        this.words = (cells + 63) >>> 6;
+        this.neigh = new int[cells * 6];
+        this.degree = new byte[cells];
+
+        for (int c = 0; c < cells; c++) {
+            int x = c / size, y = c % size, k = 0;
+            for (int[] o : NEIGH_OFFSETS) {
+                int nx = x + o[0], ny = y + o[1];
+                if (nx >= 0 && nx < size && ny >= 0 && ny < size)
+                    neigh[c * 6 + k++] = nx * size + ny;
+            }
+            degree[c] = (byte) k;
+            for (int j = k; j < 6; j++) neigh[c * 6 + j] = -1;
+        }
+
+        this.ring = new int[cells * 6];
+        for (int c = 0; c < cells; c++) {
+            int x = c / size, y = c % size;
+            for (int k = 0; k < 6; k++) {
+                int nx = x + RING_OFFSETS[k][0], ny = y + RING_OFFSETS[k][1];
+                boolean outX = nx < 0 || nx >= size, outY = ny < 0 || ny >= size;
+                ring[c * 6 + k] = outX && outY ? RING_CORNER : outX ? RING_EDGE_0
+                                : outY ? RING_EDGE_1 : nx * size + ny;
+            }
+        }
+
+        this.bridge = new int[cells * 6];
+        this.bridgeBlock = new int[cells * 6];
+        this.bridgeCarrier = new int[cells * 12];
+        for (int c = 0; c < cells; c++) {
+            int x = c / size, y = c % size;
+            for (int k = 0; k < 6; k++) {
+                int bx = x + BRIDGE_OFFSETS[k][0], by = y + BRIDGE_OFFSETS[k][1];
+                int kx = x + BRIDGE_BLOCKS[k][0], ky = y + BRIDGE_BLOCKS[k][1];
+                boolean in = bx >= 0 && bx < size && by >= 0 && by < size;
+                bridge[c * 6 + k] = in ? bx * size + by : -1;
+                bridgeBlock[c * 6 + k] = kx >= 0 && kx < size && ky >= 0 && ky < size ? kx * size + ky : -1;
+                bridgeCarrier[c * 12 + 2 * k] = -1;
+                bridgeCarrier[c * 12 + 2 * k + 1] = -1;
+                if (!in) continue;
+                int t = bx * size + by, found = 0;
+                for (int i = 0; i < degree[c]; i++) {
+                    int n1 = neigh[c * 6 + i];
+                    for (int j = 0; j < degree[t]; j++) {
+                        if (neigh[t * 6 + j] == n1) bridgeCarrier[c * 12 + 2 * k + found++] = n1;
+                    }
+                }
+            }
+        }
+
+        int[] perCarrier = new int[cells + 1];
+        for (int c = 0; c < cells; c++) {
+            for (int k = 0; k < 6; k++) {
+                int t = bridge[c * 6 + k];
+                if (t > c) {
+                    perCarrier[bridgeCarrier[c * 12 + 2 * k] + 1]++;
+                    perCarrier[bridgeCarrier[c * 12 + 2 * k + 1] + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cells; c++) perCarrier[c + 1] += perCarrier[c];
+        this.carrierBridgesStart = perCarrier.clone();
+        this.carrierBridges = new int[perCarrier[cells]];
+        for (int c = 0; c < cells; c++) {
+            for (int k = 0; k < 6; k++) {
+                int t = bridge[c * 6 + k];
+                if (t <= c) continue;
+                for (int j = 0; j < 2; j++) {
+                    int m = bridgeCarrier[c * 12 + 2 * k + j];
+                    carrierBridges[perCarrier[m]++] = c * 6 + k;
+                }
+            }
+        }
+
+        // Plantillas de borde: cada forma en sus dos reflexiones, para los cuatro bordes
+        java.util.List<int[]> found = new java.util.ArrayList<>();
+        for (int f = 0; f < TEMPLATE_SHAPES.length; f++) {
+            int[][] shape = TEMPLATE_SHAPES[f];
+            int row = TEMPLATE_ROWS[f];
+            int[][] mirror = new int[shape.length][];
+            for (int i = 0; i < shape.length; i++)
+                mirror[i] = new int[]{shape[i][0], -shape[i][0] - shape[i][1]};
+            boolean symmetric = sameCells(shape, mirror);
+            for (int player = 0; player < 2; player++) {
+                for (int side = 0; side < 2; side++) {
+                    for (int c = 0; c < cells; c++) {
+                        int along = player == 0 ? x(c) : y(c);
+                        if (along != (side == 0 ? row : size - 1 - row)) continue;
+                        addTemplate(found, c, player, side, shape);
+                        if (!symmetric) addTemplate(found, c, player, side, mirror);
+                    }
+                }
+            }
+        }
+        this.templates = found.size();
+        this.templateAnchor = new int[templates];
+        this.templatePlayer = new byte[templates];
+        this.templateSide = new byte[templates];
+        this.templateCarrierStart = new int[templates + 1];
+        this.templateMask = new long[templates * words];
+        int total = 0;
+        for (int[] t : found) total += t.length - 3;
+        this.templateCarrier = new int[total];
+        int[] perCell = new int[cells + 1];
+        for (int t = 0, pos = 0; t < templates; t++) {
+            int[] tpl = found.get(t);
+            templateAnchor[t] = tpl[0];
+            templatePlayer[t] = (byte) tpl[1];
+            templateSide[t] = (byte) tpl[2];
+            templateCarrierStart[t] = pos;
+            perCell[tpl[0] + 1]++;
+            for (int i = 3; i < tpl.length; i++) {
+                int m = tpl[i];
+                templateCarrier[pos++] = m;
+                templateMask[t * words + (m >>> 6)] |= 1L << m;
+                perCell[m + 1]++;
+            }
+            templateCarrierStart[t + 1] = pos;
+        }
+        for (int c = 0; c < cells; c++) perCell[c + 1] += perCell[c];
+        this.cellTemplatesStart = perCell.clone();
+        this.cellTemplates = new int[perCell[cells]];
+        for (int t = 0; t < templates; t++) {
+            cellTemplates[perCell[templateAnchor[t]]++] = t;
+            for (int i = templateCarrierStart[t]; i < templateCarrierStart[t + 1]; i++)
+                cellTemplates[perCell[templateCarrier[i]]++] = t;
+        }
+
+        // Semilla fija: los hashes deben ser estables entre partidas y jugadores
+        java.util.SplittableRandom rnd = new java.util.SplittableRandom(0x5E8A6010L + size);
+        this.zobrist = new long[2 * cells];
+        for (int i = 0; i < zobrist.length; i++) zobrist[i] = rnd.nextLong();
+        this.zobristSide = rnd.nextLong();
+    }
+
+    /**
+     * Devuelve la geometría compartida para el tamaño indicado.
+     *
+     * @param size Lado del tablero.
+     * @return Tablas precalculadas.
+     */
+    public static HexGeometry of(int size) {
+        synchronized (CACHE) {
+            HexGeometry g = CACHE[size];
+            if (g == null) {
+                g = new HexGeometry(size);
+                CACHE[size] = g;
+            }
+            return g;
+        }
+    }
+
+    /**
+     * Añade la plantilla si todo su carrier cae dentro del tablero, como
+     * {anchor, player, side, carrier...}. Las formas están descritas para el
+     * borde x = 0; el borde final es un giro de 180 grados y el jugador 1
+     * intercambia x e y.
+     */
+    private void addTemplate(java.util.List<int[]> out, int anchor, int player, int side, int[][] shape) {
+        int[] tpl = new int[3 + shape.length];
+        tpl[0] = anchor;
+        tpl[1] = player;
+        tpl[2] = side;
+        int ax = x(anchor), ay = y(anchor);
+        for (int i = 0; i < shape.length; i++) {
+            int dx = side == 0 ? shape[i][0] : -shape[i][0];
+            int dy = side == 0 ? shape[i][1] : -shape[i][1];
+            int mx = ax + (player == 0 ? dx : dy);
+            int my = ay + (player == 0 ? dy : dx);
+            if (mx < 0 || mx >= size || my < 0 || my >= size) return;
+            tpl[3 + i] = index(mx, my);
+        }
+        out.add(tpl);
+    }
+
+    private static boolean sameCells(int[][] a, int[][] b) {
+        outer:
+        for (int[] p : a) {
+            for (int[] q : b) {
+                if (p[0] == q[0] && p[1] == q[1]) continue outer;
+            }
+            return false;
+        }
+        return a.length == b.length;
+    }
+
+    public int index(int x, int y) {
+        return x * size + y;
+    }
+
+    public int x(int cell) {
+        return cell / size;
+    }
+
+    public int y(int cell) {
+        return cell % size;
+    }
+
+    /**
+     * Indica si la casilla toca el borde inicial del jugador.
+     * PLAYER1 (0) conecta x = 0 con x = size - 1; PLAYER2 (1) conecta y = 0 con y = size - 1.
+     */
+    public boolean onStartEdge(int player, int cell) {
+        return (player == 0 ? x(cell) : y(cell)) == 0;
+    }
+
+    /**
+     * Indica si la casilla toca el borde final del jugador.
+     */
+    public boolean onEndEdge(int player, int cell) {
+        return (player == 0 ? x(cell) : y(cell)) == size - 1;
+    }
+}
@@ -0,0 +1,187 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Relleno de casillas inferiores (muertas y capturadas) con patrones locales.
+ *
+ * El estado de cada vecino de una casilla se codifica con dos bits (vacío,
+ * piedra o borde de PLAYER1, de PLAYER2, o la esquina que es borde de ambos) y
+ * los seis vecinos en orden cíclico ({@link HexGeometry#ring}) dan un índice de
+ * 12 bits en la tabla {@link #USELESS}, precalculada una sola vez.
+ *
+ * Una casilla es inútil para un jugador si cualquier camino suyo que pasara por
+ * ella se puede desviar por piedras propias que ya la rodean: todo par de
+ * vecinos que podría usar (vacíos o suyos) está unido por un arco del anillo
+ * hecho sólo de piedras o bordes suyos. Entonces su color no cambia el ganador
+ * de ninguna partida terminada, la casilla está muerta y rellenarla no cambia
+ * el valor de la posición.
+ *
+ * Dos casillas vacías vecinas están capturadas por un jugador si, al jugar él
+ * en cualquiera de las dos, la otra queda muerta: si el rival juega en una, él
+ * responde en la otra. Se rellenan las dos con sus piedras.
+ *
+ * El relleno se repite hasta un punto fijo, porque cada piedra nueva puede
+ * matar o capturar casillas vecinas. Las casillas vulnerables y dominadas no se
+ * rellenan: no tienen un valor fijo y podarlas exige conservar la jugada que las
+ * domina en cada nodo.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class InferiorCells {
+
+    /** Bits de {@link #USELESS}: la casilla es inútil para PLAYER1 / PLAYER2. */
+    static final int USELESS_0 = 1;
+    static final int USELESS_1 = 2;
+
+    /** Valor de cada anillo de vecinos codificado, dos bits por vecino. */
+    private static final byte[] USELESS = new byte[1 << 12];
+
+    static {
+        for (int code = 0; code < USELESS.length; code++) {
+            int flags = 0;
+            for (int p = 0; p < 2; p++) {
+                if (useless(code, p)) flags |= 1 << p;
+            }
+            USELESS[code] = (byte) flags;
+        }
+    }
+
+    private int[] stack = new int[0];
+    private int top;
+    private int filled;
+
+    /**
+     * Rellena todas las casillas inferiores del tablero.
+     *
+     * @param b Tablero de búsqueda.
+     * @return Número de casillas rellenadas, que se deshacen con otros tantos
+     *         {@link BitBoard#undo()}.
+     */
+    public int fillIn(BitBoard b) {
+        reset(b);
+        for (int c = b.getCells() - 1; c >= 0; c--) {
+            if (b.isEmpty(c)) stack[top++] = c;
+        }
+        return propagate(b);
+    }
+
+    /**
+     * Rellena las casillas inferiores que aparecen por una jugada, suponiendo
+     * que la posición anterior ya estaba rellenada: sólo pueden cambiar los
+     * vecinos de la casilla jugada.
+     *
+     * @param b Tablero de búsqueda.
+     * @param cell Última casilla jugada, o -1.
+     * @return Número de casillas rellenadas.
+     */
+    public int fillAround(BitBoard b, int cell) {
+        reset(b);
+        if (cell >= 0) push(b.geo, cell);
+        return propagate(b);
+    }
+
+    private void reset(BitBoard b) {
+        // Cada casilla entra una vez al principio y como mucho seis más al rellenar vecinos
+        if (stack.length < b.getCells() * 7) stack = new int[b.getCells() * 7];
+        top = 0;
+        filled = 0;
+    }
+
+    private void push(HexGeometry geo, int cell) {
+        for (int k = 0; k < 6; k++) {
+            int nb = geo.ring[cell * 6 + k];
+            if (nb >= 0) stack[top++] = nb;
+        }
+    }
+
+    private int propagate(BitBoard b) {
+        HexGeometry geo = b.geo;
+        while (top > 0 && !b.isGameOver()) {
+            int c = stack[--top];
+            if (!b.isEmpty(c)) continue;
+
+            int code = code(b, c, -1, 0);
+            int useless = USELESS[code];
+            if (useless != 0) {
+                // Inútil para uno: se le da al otro; muerta para los dos: a cualquiera
+                int owner = useless == USELESS_0 ? 1 : useless == USELESS_1 ? 0 : b.getCurrentPlayer();
+                fill(b, c, owner);
+                continue;
+            }
+            for (int k = 0; k < 6; k++) {
+                int nb = geo.ring[c * 6 + k];
+                if (nb < 0 || !b.isEmpty(nb)) continue;
+                int p = captor(b, c, nb);
+                if (p != BitBoard.NONE) {
+                    fill(b, c, p);
+                    if (b.isEmpty(nb) && !b.isGameOver()) fill(b, nb, p);
+                    break;
+                }
+            }
+        }
+        return filled;
+    }
+
+    private void fill(BitBoard b, int cell, int player) {
+        b.fill(cell, player);
+        filled++;
+        push(b.geo, cell);
+    }
+
+    /**
+     * Jugador que captura la pareja de casillas vacías vecinas, o
+     * {@link BitBoard#NONE} si no la captura ninguno.
+     */
+    private static int captor(BitBoard b, int a, int c) {
+        for (int p = 0; p < 2; p++) {
+            if (USELESS[code(b, a, c, p)] != 0 && USELESS[code(b, c, a, p)] != 0) return p;
+        }
+        return BitBoard.NONE;
+    }
+
+    /**
+     * Anillo codificado de la casilla, tomando {@code as} como piedra de
+     * {@code player} si no es -1.
+     */
+    private static int code(BitBoard b, int cell, int as, int player) {
+        int[] ring = b.geo.ring;
+        int code = 0;
+        for (int k = 0; k < 6; k++) {
+            int nb = ring[cell * 6 + k];
+            int v;
+            if (nb < 0) v = -nb;
+            else if (nb == as) v = 1 + player;
+            else v = b.owns(0, nb) ? 1 : b.owns(1, nb) ? 2 : 0;
+            code |= v << (2 * k);
+        }
+        return code;
+    }
+
+    /**
+     * Indica si una casilla con el anillo dado es inútil para el jugador: cada
+     * par de vecinos que puede usar está unido por un arco de vecinos suyos.
+     */
+    private static boolean useless(int code, int p) {
+        boolean[] own = new boolean[6];
+        boolean[] usable = new boolean[6];
+        for (int k = 0; k < 6; k++) {
+            int v = (code >>> (2 * k)) & 3;
+            own[k] = v == 1 + p || v == 3;
+            usable[k] = v == 0 || own[k];
+        }
+        for (int i = 0; i < 6; i++) {
+            for (int j = i + 1; j < 6; j++) {
+                if (usable[i] && usable[j] && !arc(own, i, j) && !arc(own, j, i)) return false;
+            }
+        }
+        return true;
+    }
+
+    /** Indica si todos los vecinos estrictamente entre {@code from} y {@code to} son propios. */
+    private static boolean arc(boolean[] own, int from, int to) {
+        for (int k = (from + 1) % 6; k != to; k = (k + 1) % 6) {
+            if (!own[k]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,190 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Árbol de Monte Carlo guardado en arrays planos (un arena de nodos), sin un
+ * objeto por nodo.
+ *
+ * Los hijos de un nodo se reservan de golpe y contiguos al expandirlo: basta
+ * con {@code firstChild} y {@code childCount}. Cada nodo guarda la casilla que
+ * lleva a él, sus visitas y victorias (desde el punto de vista del jugador que
+ * ha hecho esa jugada) y las estadísticas RAVE/AMAF correspondientes.
+ *
+ * Varios hilos pueden compartir el árbol: la expansión reclama el nodo con un
+ * CAS y publica los hijos con escritura release, y los contadores se
+ * actualizan con operaciones atómicas sobre los propios arrays (sin locks).
+ * La pérdida virtual suma visitas sin victorias a los nodos del camino
+ * mientras una simulación está en curso para que los demás hilos se repartan.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class MctsTree {
+
+    /** Peso de RAVE: con K visitas reales, RAVE y UCT pesan lo mismo (aprox.). */
+    static final double RAVE_K = 500.0;
+    /** Constante de exploración UCT. */
+    static final double UCT_C = 0.25;
+    /** Visitas perdidas que se suman mientras un hilo pasa por un nodo. */
+    static final int VIRTUAL_LOSS = 1;
+
+    /** firstChild de un nodo que otro hilo está expandiendo. */
+    private static final int EXPANDING = -2;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SIZE;
+
+    static {
+        try {
+            SIZE = MethodHandles.lookup().findVarHandle(MctsTree.class, "size", int.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    final int capacity;
+    final int[] move;
+    final int[] firstChild;
+    final int[] childCount;
+    final int[] visits;
+    final int[] wins;
+    final int[] raveVisits;
+    final int[] raveWins;
+    volatile int size;
+
+    /**
+     * @param capacity Número máximo de nodos.
+     */
+    public MctsTree(int capacity) {
+        this.capacity = capacity;
+        this.move = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.childCount = new int[capacity];
+        this.visits = new int[capacity];
+        this.wins = new int[capacity];
+        this.raveVisits = new int[capacity];
+        this.raveWins = new int[capacity];
+        reset();
+    }
+
+    /** Vacía el árbol dejando sólo la raíz. */
+    public void reset() {
+        size = 1;
+        init(0, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void init(int node, int cell) {
+        move[node] = cell;
+        firstChild[node] = -1;
+        childCount[node] = 0;
+        visits[node] = 0;
+        wins[node] = 0;
+        raveVisits[node] = 0;
+        raveWins[node] = 0;
+    }
+
+    public boolean isExpanded(int node) {
+        return (int) INTS.getAcquire(firstChild, node) >= 0;
+    }
+
+    /**
+     * Crea los hijos del nodo, uno por jugada.
+     *
+     * @return false si no caben en el arena o si otro hilo ya lo está expandiendo.
+     */
+    public boolean expand(int node, int[] moves, int n) {
+        if (size + n > capacity) return false;
+        if (!INTS.compareAndSet(firstChild, node, -1, EXPANDING)) return false;
+        int first = (int) SIZE.getAndAdd(this, n);
+        if (first + n > capacity) {
+            INTS.setRelease(firstChild, node, -1);
+            return false;
+        }
+        for (int i = 0; i < n; i++) init(first + i, moves[i]);
+        childCount[node] = n;
+        INTS.setRelease(firstChild, node, first);
+        return true;
+    }
+
+    /**
+     * Suma la pérdida virtual a un nodo por el que baja una simulación.
+     */
+    void addVirtualLoss(int node) {
+        INTS.getAndAdd(visits, node, VIRTUAL_LOSS);
+    }
+
+    /**
+     * Retropropaga el resultado de una simulación en un nodo.
+     *
+     * @param win Si ha ganado quien ha jugado la casilla del nodo.
+     * @param shared Si el árbol es compartido: actualización atómica que
+     *               además retira la pérdida virtual.
+     */
+    void update(int node, boolean win, boolean shared) {
+        if (shared) {
+            if (VIRTUAL_LOSS != 1) INTS.getAndAdd(visits, node, 1 - VIRTUAL_LOSS);
+            if (win) INTS.getAndAdd(wins, node, 1);
+        } else {
+            visits[node]++;
+            if (win) wins[node]++;
+        }
+    }
+
+    /**
+     * Suma una muestra AMAF a un nodo.
+     */
+    void updateRave(int node, boolean win, boolean shared) {
+        if (shared) {
+            INTS.getAndAdd(raveVisits, node, 1);
+            if (win) INTS.getAndAdd(raveWins, node, 1);
+        } else {
+            raveVisits[node]++;
+            if (win) raveWins[node]++;
+        }
+    }
+
+    /**
+     * Elige el hijo con mayor valor UCT-RAVE.
+     */
+    public int select(int node) {
+        int first = firstChild[node], end = first + childCount[node];
+        double logN = Math.log(visits[node] + 1);
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = first; c < end; c++) {
+            double v = value(c, logN);
+            if (v > bestValue) {
+                bestValue = v;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private double value(int c, double logN) {
+        int n = visits[c];
+        int rn = raveVisits[c];
+        double q = n > 0 ? (double) wins[c] / n : 0;
+        double rq = rn > 0 ? (double) raveWins[c] / rn : 0.5;
+        double beta = Math.sqrt(RAVE_K / (3.0 * n + RAVE_K));
+        return (1 - beta) * q + beta * rq + UCT_C * Math.sqrt(logN / (n + 1));
+    }
+
+    /**
+     * @return El hijo del nodo con más visitas.
+     */
+    public int mostVisitedChild(int node) {
+        int first = firstChild[node], end = first + childCount[node];
+        int best = first;
+        for (int c = first; c < end; c++) {
+            if (visits[c] > visits[best]) best = c;
+        }
+        return best;
+    }
+}
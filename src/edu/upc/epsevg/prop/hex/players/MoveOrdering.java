@@ -0,0 +1,117 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Ordenación de jugadas para la poda Alpha-Beta.
+ *
+ * Orden de prioridad: jugada de la variante principal, jugada de la tabla de
+ * transposiciones, las dos jugadas killer del ply, la respuesta que salva un
+ * puente en el que acaba de entrar el rival y el resto según la tabla de
+ * historia (por casilla y jugador), que se incrementa en cada corte beta.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class MoveOrdering {
+
+    private static final int PV_SCORE = Integer.MAX_VALUE;
+    private static final int TT_SCORE = Integer.MAX_VALUE - 1;
+    private static final int KILLER1_SCORE = Integer.MAX_VALUE - 2;
+    private static final int KILLER2_SCORE = Integer.MAX_VALUE - 3;
+    private static final int REPLY_SCORE = Integer.MAX_VALUE - 4;
+
+    private final int[][] killers;
+    private final int[][] history;
+    private final int[][] keys;
+
+    /**
+     * @param cells Número de casillas del tablero.
+     * @param maxPly Profundidad máxima de la búsqueda.
+     */
+    public MoveOrdering(int cells, int maxPly) {
+        this.killers = new int[maxPly][2];
+        this.history = new int[2][cells];
+        this.keys = new int[maxPly][cells];
+        clearKillers();
+    }
+
+    /**
+     * Prepara la tabla para un nuevo movimiento: se olvidan las killers y la
+     * historia se reduce a la mitad para que pese más lo reciente.
+     */
+    public void newSearch() {
+        clearKillers();
+        for (int[] h : history) {
+            for (int i = 0; i < h.length; i++) h[i] >>= 1;
+        }
+    }
+
+    private void clearKillers() {
+        for (int[] k : killers) {
+            k[0] = -1;
+            k[1] = -1;
+        }
+    }
+
+    /**
+     * Ordena las jugadas de un nodo.
+     *
+     * @param moves Jugadas a ordenar.
+     * @param n Número de jugadas.
+     * @param ply Distancia a la raíz.
+     * @param player Jugador que mueve (0 o 1).
+     * @param pvMove Jugada de la variante principal, o -1.
+     * @param ttMove Jugada de la tabla de transposiciones, o -1.
+     * @param replyMove Respuesta a una intrusión en un puente propio
+     *                  ({@link VirtualConnections#bridgeReply}), o -1.
+     */
+    public void order(int[] moves, int n, int ply, int player, int pvMove, int ttMove, int replyMove) {
+        int[] key = keys[ply];
+        int[] h = history[player];
+        int k1 = killers[ply][0], k2 = killers[ply][1];
+
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            key[i] = m == pvMove ? PV_SCORE
+                   : m == ttMove ? TT_SCORE
+                   : m == k1 ? KILLER1_SCORE
+                   : m == k2 ? KILLER2_SCORE
+                   : m == replyMove ? REPLY_SCORE
+                   : h[m];
+        }
+        // Inserción: n es pequeño y las listas suelen llegar casi ordenadas
+        for (int i = 1; i < n; i++) {
+            int m = moves[i], v = key[i], j = i - 1;
+            while (j >= 0 && key[j] < v) {
+                moves[j + 1] = moves[j];
+                key[j + 1] = key[j];
+                j--;
+            }
+            moves[j + 1] = m;
+            key[j + 1] = v;
+        }
+    }
+
+    /**
+     * Registra una jugada que ha producido un corte.
+     *
+     * @param ply Distancia a la raíz.
+     * @param player Jugador que mueve (0 o 1).
+     * @param move Jugada que ha cortado.
+     * @param depth Profundidad restante del nodo.
+     */
+    public void onCutoff(int ply, int player, int move, int depth) {
+        int[] k = killers[ply];
+        if (k[0] != move) {
+            k[1] = k[0];
+            k[0] = move;
+        }
+        int[] h = history[player];
+        h[move] += depth * depth;
+        // Evita el desbordamiento sin perder el orden relativo
+        if (h[move] > (1 << 30)) {
+            for (int[] hp : history) {
+                for (int i = 0; i < hp.length; i++) hp[i] >>= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.util.SplittableRandom;
+
+/**
+ * Partidas aleatorias rápidas por relleno completo.
+ *
+ * En Hex un tablero lleno tiene siempre exactamente un ganador, así que no hace
+ * falta comprobar la conexión jugada a jugada: se reparten las casillas vacías
+ * al azar (el jugador con el turno se queda con la mitad redondeada hacia
+ * arriba) y se hace un único flood fill al final desde el borde inicial del
+ * primer jugador.
+ *
+ * Cada instancia tiene sus propios arrays y su {@link SplittableRandom}, así
+ * que debe usarse desde un solo hilo; para varios hilos se crea una por hilo
+ * con {@link #split()}.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class Playout {
+
+    /** Marca de casilla del primer jugador ya visitada por el flood fill. */
+    private static final byte VISITED = 2;
+
+    private final HexGeometry geo;
+    private final SplittableRandom random;
+
+    private final byte[] base;
+    private final byte[] owner;
+    private final int[] empties;
+    private final int[] stack;
+    private int emptyCount;
+    private int toMove;
+
+    /**
+     * @param size Lado del tablero.
+     */
+    public Playout(int size) {
+        this(size, new SplittableRandom());
+    }
+
+    /**
+     * @param size Lado del tablero.
+     * @param random Generador propio de esta instancia.
+     */
+    public Playout(int size, SplittableRandom random) {
+        this.geo = HexGeometry.of(size);
+        this.random = random;
+        this.base = new byte[geo.cells];
+        this.owner = new byte[geo.cells];
+        this.empties = new int[geo.cells];
+        this.stack = new int[geo.cells];
+    }
+
+    /**
+     * @return Otra instancia del mismo tamaño con un generador independiente.
+     */
+    public Playout split() {
+        return new Playout(geo.size, random.split());
+    }
+
+    public int getSize() {
+        return geo.size;
+    }
+
+    /**
+     * Fija la posición de partida de las siguientes simulaciones.
+     *
+     * @param board Tablero de búsqueda.
+     */
+    public void load(BitBoard board) {
+        int n = 0;
+        for (int c = 0; c < geo.cells; c++) {
+            if (board.owns(0, c)) {
+                base[c] = 0;
+            } else if (board.owns(1, c)) {
+                base[c] = 1;
+            } else {
+                base[c] = BitBoard.NONE;
+                empties[n++] = c;
+            }
+        }
+        emptyCount = n;
+        toMove = board.getCurrentPlayer();
+    }
+
+    /**
+     * Juega una partida aleatoria desde la posición cargada.
+     *
+     * @return El ganador (0 o 1).
+     */
+    public int run() {
+        System.arraycopy(base, 0, owner, 0, geo.cells);
+        int n = emptyCount;
+        int mine = (n + 1) >> 1;
+        byte me = (byte) toMove, other = (byte) (1 - toMove);
+
+        // Fisher-Yates parcial: sólo hace falta elegir las casillas de quien mueve.
+        // Cada long aleatorio da dos índices por multiplicación (sesgo < n / 2^32).
+        long bits = 0;
+        for (int i = 0; i < mine; i++) {
+            if ((i & 1) == 0) bits = random.nextLong();
+            else bits >>>= 32;
+            int j = i + (int) (((bits & 0xFFFFFFFFL) * (n - i)) >>> 32);
+            int c = empties[j];
+            empties[j] = empties[i];
+            empties[i] = c;
+            owner[c] = me;
+        }
+        for (int i = mine; i < n; i++) owner[empties[i]] = other;
+        return winner();
+    }
+
+    /**
+     * Dueño de la casilla tras la última simulación (0 o 1).
+     */
+    public int owner(int cell) {
+        return owner[cell] == 1 ? 1 : 0;
+    }
+
+    /**
+     * Flood fill desde el borde x = 0 por las piedras del primer jugador. Las
+     * casillas visitadas se marcan con {@link #VISITED} en el propio array de
+     * dueños, que es una copia de trabajo.
+     */
+    private int winner() {
+        int size = geo.size, last = geo.cells - size;
+        int[] neigh = geo.neigh;
+        byte[] degree = geo.degree;
+        int top = 0;
+        for (int y = 0; y < size; y++) {
+            if (owner[y] == 0) {
+                owner[y] = VISITED;
+                stack[top++] = y;
+            }
+        }
+        while (top > 0) {
+            int c = stack[--top];
+            if (c >= last) return 0;
+            int b = c * 6, end = b + degree[c];
+            for (int k = b; k < end; k++) {
+                int v = neigh[k];
+                if (owner[v] == 0) {
+                    owner[v] = VISITED;
+                    stack[top++] = v;
+                }
+            }
+        }
+        return 1;
+    }
+}
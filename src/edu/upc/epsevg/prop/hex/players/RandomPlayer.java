@@ -19,6 +19,8 @@ import java.util.Random;
 public class RandomPlayer implements IPlayer, IAuto {
 
     private String name;
+    private final Random rand = new Random();
+    private int[] free;
     
 
     public RandomPlayer(String name) {
@@ -40,29 +42,20 @@ public class RandomPlayer implements IPlayer, IAuto {
     @Override
     public PlayerMove move(HexGameStatus s) {
 
+        int size = s.getSize();
+        if (free == null || free.length != size * size) free = new int[size * size];
+
         int freeCells = 0;
-        for(int i=0;i<s.getSize();i++){
-          for(int k=0;k<s.getSize();k++){
-              if(s.getPos(i, k)==0) {
-                  freeCells++;
-              }
+        for(int i=0;i<size;i++){
+          for(int k=0;k<size;k++){
+              if(s.getPos(i, k)==0) free[freeCells++] = i * size + k;
             }  
         }
 
         if(freeCells==0) return null;        
         
-        Random rand = new Random();
-        int q = rand.nextInt(freeCells);
-        freeCells = 0;
-        for(  int i=0;i<s.getSize();i++){
-          for(int k=0;k<s.getSize();k++){
-              if(s.getPos(i, k)==0){
-                  if(freeCells==q) return new PlayerMove( new Point(i,k), 0L, 0, SearchType.MINIMAX);
-                  freeCells++;
-              }
-            }  
-        }
-        return null;        
+        int c = free[rand.nextInt(freeCells)];
+        return new PlayerMove( new Point(c / size, c % size), 0L, 0, SearchType.MINIMAX);
     }
 
     /**
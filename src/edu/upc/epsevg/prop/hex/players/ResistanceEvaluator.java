@@ -0,0 +1,72 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Heurística de red de resistencias (Queenbee, Hexy): el tablero de cada
+ * jugador se trata como un circuito entre sus dos bordes y la posición se
+ * puntúa por el logaritmo del cociente de conductancias efectivas.
+ *
+ * Cada hilo tiene su propio {@link ResistanceSolver} y guarda los potenciales
+ * de la última resolución de cada jugador. El gradiente conjugado arranca de
+ * ellos en lugar de los del nodo padre, que Alpha-Beta no evalúa: las hojas
+ * consecutivas suelen ser hermanas que difieren en una piedra, así que la
+ * hoja anterior es la posición evaluada más cercana que hay a mano.
+ *
+ * Para que el valor no dependa de qué hoja se evaluó antes (la tabla de
+ * transposiciones lo guarda) se resuelve con una tolerancia muy estricta: el
+ * punto de partida cambia el valor en menos de 1e-8 puntos, muy por debajo
+ * del redondeo a entero.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class ResistanceEvaluator implements Evaluator {
+
+    /** Escala del logaritmo del cociente de conductancias a puntos enteros. */
+    private static final double SCALE = 1000.0;
+    private static final int LIMIT = 1_000_000;
+    private static final double TOLERANCE = 1e-8;
+    private static final int MAX_ITERATIONS = 200;
+
+    private static final class Workspace {
+        ResistanceSolver solver;
+        double[][] last;
+        boolean[] hasLast;
+    }
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    @Override
+    public int evaluate(BitBoard board, int player) {
+        double mine = conductance(board, player);
+        double theirs = conductance(board, 1 - player);
+        double v = SCALE * Math.log((mine + 1e-12) / (theirs + 1e-12));
+        return (int) Math.max(-LIMIT, Math.min(LIMIT, v));
+    }
+
+    /**
+     * Conductancia efectiva entre los bordes del jugador.
+     *
+     * @param board Tablero de búsqueda.
+     * @param player Jugador (0 o 1).
+     * @return Conductancia, mayor cuanto más conectado.
+     */
+    public double conductance(BitBoard board, int player) {
+        Workspace w = WORKSPACE.get();
+        if (w.solver == null || w.solver.getSize() != board.getSize()) {
+            w.solver = new ResistanceSolver(board.getSize());
+            w.last = new double[2][board.getCells()];
+            w.hasLast = new boolean[2];
+        }
+        ResistanceSolver solver = w.solver;
+        solver.setup(board, player);
+        solver.solve(w.hasLast[player] ? w.last[player] : null, TOLERANCE, MAX_ITERATIONS);
+        System.arraycopy(solver.getPotentials(), 0, w.last[player], 0, board.getCells());
+        w.hasLast[player] = true;
+        return solver.conductance();
+    }
+
+    @Override
+    public String getName() {
+        return "resistance";
+    }
+}
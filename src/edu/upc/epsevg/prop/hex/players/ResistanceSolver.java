@@ -0,0 +1,214 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Resolución de la red de resistencias de un jugador sobre el tablero.
+ *
+ * Cada casilla es un nodo con una resistencia propia (piedra propia casi 0,
+ * vacía 1, rival infinita, es decir, fuera de la red). Entre dos casillas
+ * vecinas la conductancia es {@code 1 / (r_a + r_b)} y entre una casilla del
+ * borde y el borde {@code 1 / r_a}. El borde inicial se fija a potencial 1 y el
+ * final a 0, y se resuelve el sistema de Kirchhoff de las casillas con
+ * gradiente conjugado precondicionado (Jacobi).
+ *
+ * La matriz es dispersa con el patrón de vecinos de {@link HexGeometry}, así
+ * que se guarda sólo la conductancia de cada arista. Todos los arrays se
+ * reservan una vez por tamaño de tablero y se reutilizan; {@link #solve} acepta
+ * un vector de potenciales inicial para arrancar desde una solución cercana.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class ResistanceSolver {
+
+    /** Resistencia de una piedra propia (0 haría la matriz singular). */
+    public static final double OWN_RESISTANCE = 0.01;
+    /** Resistencia de una casilla vacía. */
+    public static final double EMPTY_RESISTANCE = 1.0;
+    /** Fuga mínima a tierra para que las zonas aisladas no dejen la matriz singular. */
+    private static final double LEAK = 1e-9;
+
+    private final HexGeometry geo;
+    private final int cells;
+
+    // Matriz: diagonal, conductancia de cada arista vecina y conductancia a cada borde
+    private final double[] diag;
+    private final double[] g;
+    private final double[] gStart;
+    private final double[] gEnd;
+    private final boolean[] active;
+
+    // Vectores del gradiente conjugado
+    private final double[] b;
+    private final double[] x;
+    private final double[] r;
+    private final double[] z;
+    private final double[] p;
+    private final double[] ap;
+
+    private int iterations;
+
+    /**
+     * @param size Lado del tablero.
+     */
+    public ResistanceSolver(int size) {
+        this.geo = HexGeometry.of(size);
+        this.cells = geo.cells;
+        this.diag = new double[cells];
+        this.g = new double[cells * 6];
+        this.gStart = new double[cells];
+        this.gEnd = new double[cells];
+        this.active = new boolean[cells];
+        this.b = new double[cells];
+        this.x = new double[cells];
+        this.r = new double[cells];
+        this.z = new double[cells];
+        this.p = new double[cells];
+        this.ap = new double[cells];
+    }
+
+    public int getSize() {
+        return geo.size;
+    }
+
+    /** Iteraciones del último {@link #solve}. */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** Potenciales de la última solución (no modificar). */
+    public double[] getPotentials() {
+        return x;
+    }
+
+    /**
+     * Construye la red del jugador para la posición.
+     *
+     * @param board Tablero de búsqueda.
+     * @param player Jugador (0 o 1).
+     */
+    public void setup(BitBoard board, int player) {
+        int opp = 1 - player;
+        for (int c = 0; c < cells; c++) active[c] = !board.owns(opp, c);
+
+        for (int c = 0; c < cells; c++) {
+            double d = LEAK;
+            b[c] = 0;
+            gStart[c] = 0;
+            gEnd[c] = 0;
+            int base = c * 6;
+            if (!active[c]) {
+                for (int k = 0; k < 6; k++) g[base + k] = 0;
+                diag[c] = 1;
+                continue;
+            }
+            double rc = resistance(board, player, c);
+            for (int k = 0; k < 6; k++) {
+                int v = geo.neigh[base + k];
+                double gv = 0;
+                if (v >= 0 && active[v]) gv = 1.0 / (rc + resistance(board, player, v));
+                g[base + k] = gv;
+                d += gv;
+            }
+            if (geo.onStartEdge(player, c)) {
+                gStart[c] = 1.0 / rc;
+                d += gStart[c];
+                b[c] += gStart[c];
+            }
+            if (geo.onEndEdge(player, c)) {
+                gEnd[c] = 1.0 / rc;
+                d += gEnd[c];
+            }
+            diag[c] = d;
+        }
+    }
+
+    private static double resistance(BitBoard board, int player, int c) {
+        return board.owns(player, c) ? OWN_RESISTANCE : EMPTY_RESISTANCE;
+    }
+
+    /**
+     * Resuelve los potenciales con gradiente conjugado precondicionado.
+     *
+     * @param warmStart Potenciales iniciales (por ejemplo los de una posición
+     *                  vecina), o null para empezar desde 0.5.
+     * @param tolerance Tolerancia relativa del residuo.
+     * @param maxIterations Máximo de iteraciones.
+     */
+    public void solve(double[] warmStart, double tolerance, int maxIterations) {
+        for (int c = 0; c < cells; c++) {
+            x[c] = !active[c] ? 0 : warmStart != null ? warmStart[c] : 0.5;
+        }
+        multiply(x, ap);
+        double bNorm = 0, rz = 0;
+        for (int c = 0; c < cells; c++) {
+            r[c] = b[c] - ap[c];
+            z[c] = r[c] / diag[c];
+            p[c] = z[c];
+            rz += r[c] * z[c];
+            bNorm += b[c] * b[c];
+        }
+        double limit = tolerance * tolerance * Math.max(bNorm, 1e-30);
+
+        iterations = 0;
+        while (iterations < maxIterations) {
+            double rr = 0;
+            for (int c = 0; c < cells; c++) rr += r[c] * r[c];
+            if (rr <= limit) break;
+
+            multiply(p, ap);
+            double pap = 0;
+            for (int c = 0; c < cells; c++) pap += p[c] * ap[c];
+            if (pap <= 0) break;
+            double alpha = rz / pap;
+            double rzNew = 0;
+            for (int c = 0; c < cells; c++) {
+                x[c] += alpha * p[c];
+                r[c] -= alpha * ap[c];
+                z[c] = r[c] / diag[c];
+                rzNew += r[c] * z[c];
+            }
+            double beta = rzNew / rz;
+            rz = rzNew;
+            for (int c = 0; c < cells; c++) p[c] = z[c] + beta * p[c];
+            iterations++;
+        }
+    }
+
+    /**
+     * Conductancia efectiva entre los bordes con diferencia de potencial unitaria.
+     *
+     * Se calcula como la potencia disipada en la red, que coincide con la
+     * corriente en la solución exacta pero tiene error cuadrático (y no lineal)
+     * en el error de los potenciales, así que basta con una tolerancia holgada.
+     */
+    public double conductance() {
+        double power = 0;
+        for (int c = 0; c < cells; c++) {
+            if (!active[c]) continue;
+            double xc = x[c];
+            int base = c * 6;
+            for (int k = 0; k < geo.degree[c]; k++) {
+                int v = geo.neigh[base + k];
+                if (v > c && g[base + k] != 0) {
+                    double dv = xc - x[v];
+                    power += g[base + k] * dv * dv;
+                }
+            }
+            double ds = 1.0 - xc;
+            power += gStart[c] * ds * ds + gEnd[c] * xc * xc;
+        }
+        return power;
+    }
+
+    private void multiply(double[] v, double[] out) {
+        for (int c = 0; c < cells; c++) {
+            double s = diag[c] * v[c];
+            int base = c * 6;
+            for (int k = 0; k < geo.degree[c]; k++) {
+                double gk = g[base + k];
+                if (gk != 0) s -= gk * v[geo.neigh[base + k]];
+            }
+            out[c] = s;
+        }
+    }
+}
@@ -6,6 +6,9 @@
  * Proporciona funcionalidades como heurísticas basadas en Dijkstra, 
  * evaluación de conectividad y detección de puentes e intermedios para mejorar la búsqueda.
  * 
+ * Con {@link #enableJmx()} publica sus estadísticas de búsqueda por JMX
+ * ({@link SexagonoStatsMBean}), para seguirlas en vivo desde jconsole o VisualVM.
+ * 
  * Implementa las interfaces IPlayer e IAuto.
  * 
  * @author Marc Gamboa
@@ -20,26 +23,196 @@ import edu.upc.epsevg.prop.hex.IPlayer;
 import edu.upc.epsevg.prop.hex.PlayerMove;
 import edu.upc.epsevg.prop.hex.SearchType;
 import edu.upc.epsevg.prop.hex.PlayerType;
-import edu.upc.epsevg.prop.hex.MoveNode;
-import static edu.upc.epsevg.prop.hex.PlayerType.getColor;
 import static edu.upc.epsevg.prop.hex.PlayerType.opposite;
 
 import java.awt.Point;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
-public class Sexagono implements IPlayer, IAuto {
+public class Sexagono implements IPlayer, IAuto, AutoCloseable {
 
     private int MAX_DEPTH;
     private long expandedNodes;
-    private boolean timeout = false;
+    // Se escriben desde el hilo del watchdog y desde el principal, y se leen en todos los buscadores
+    private volatile boolean timeout = false;
+    private volatile boolean stopHelpers = false;
     private final boolean useTimeout;
     private PlayerType myPlayer;
     private PlayerType otherPlayer;
+    private final TranspositionTable tt;
+    private final Evaluator evaluator;
+    private final int threads;
+    private long ttSalt;
+    private Search[] searches;
+    private ExecutorService pool;
+    private final Parallelism parallelism;
+    private ForkJoinPool forkJoinPool;
+    private final ConcurrentLinkedQueue<Search> spareSearches = new ConcurrentLinkedQueue<>();
+    private final LongAdder splitNodes = new LongAdder();
+    
+    // Resultado de la jugada anterior, para reenraizar en la siguiente
+    private BitBoard lastRoot;
+    private int lastMove = -1;
+    private int[] lastPv;
+    private int lastPvLen;
+    private int lastDepth;
+    // Variante y profundidad heredadas por la búsqueda en curso
+    private int[] carriedPv;
+    private int carriedPvLen;
+    private int carriedDepth;
+    
+    // Pondering: búsqueda de la respuesta prevista mientras piensa el rival
+    private final boolean ponder;
+    private volatile boolean stopPonder = false;
+    private ExecutorService ponderPool;
+    private Future<?> ponderTask;
+    private Search ponderSearch;
+    private BitBoard ponderRoot;
+    private long ponderHits;
+    private long ponderMisses;
+    
+    /** Identificador del buscador de pondering. */
+    private static final int PONDER = Integer.MIN_VALUE;
+    
+    /** Profundidad restante mínima para repartir un nodo en Young Brothers Wait. */
+    private static final int SPLIT_MIN_DEPTH = 3;
+    
+    /** Profundidad restante mínima para lanzar H-search en un nodo. */
+    private static final int HSEARCH_MIN_DEPTH = 2;
+    
+    // Presupuesto de H-search por nodo y jugador (0 = desactivado)
+    private final int hsearchBudget;
+    
+    /**
+     * Casillas vacías recomendadas para activar el solver. Por defecto está
+     * desactivado; se activa con {@link Options#solverEmpties(int)}.
+     */
+    public static final int DEFAULT_SOLVER_EMPTIES = 30;
+    
+    /** Nodos que puede expandir el solver en cada jugada. */
+    private static final long SOLVER_NODES = 50_000;
+    
+    /** Tiempo máximo del solver en cada jugada, en ms: el resto es para la búsqueda. */
+    private static final long SOLVER_MILLIS = 200;
+    
+    // Casillas vacías a partir de las cuales se intenta resolver (0 = nunca)
+    private final int solverEmpties;
+    private DfpnSolver solver;
+    
+    // Estadísticas de búsqueda, publicadas por JMX con enableJmx()
+    private final SexagonoStats stats;
+    
+    /** Cada cuántos nodos (menos uno) vuelca cada buscador sus contadores en {@link #stats}. */
+    private static final long STATS_FLUSH_MASK = 1023;
+    
+    /** Se cronometra una de cada tantas evaluaciones (menos uno): nanoTime cuesta casi como una hoja. */
+    private static final long EVAL_SAMPLE_MASK = 15;
+    
+    /**
+     * Esquemas de búsqueda paralela.
+     */
+    public enum Parallelism {
+        /** Ayudantes independientes que comparten la tabla de transposiciones. */
+        LAZY_SMP,
+        /** Young Brothers Wait: fork/join de los hermanos en la raíz y en los nodos PV. */
+        YOUNG_BROTHERS_WAIT
+    }
+    
+    /** Memoria por defecto de la tabla de transposiciones, en MB. */
+    public static final int DEFAULT_TT_MB = 64;
     
     
+    /**
+     * Opciones del jugador más allá de la profundidad y el timeout. Por defecto
+     * son las del jugador original (un hilo, sin pondering, sin H-search ni
+     * solver); se cambian sólo las necesarias, p. ej.
+     * {@code new Sexagono(0, true, new Sexagono.Options().threads(4).ponder(true))}.
+     */
+    public static final class Options {
+        
+        private int ttMegabytes = DEFAULT_TT_MB;
+        private Evaluator evaluator;
+        private int threads = 1;
+        private Parallelism parallelism = Parallelism.LAZY_SMP;
+        private boolean ponder;
+        private int hsearchBudget;
+        private int solverEmpties;
+        
+        /**
+         * @param megabytes Memoria de la tabla de transposiciones, en MB
+         *                  (por defecto {@link Sexagono#DEFAULT_TT_MB}).
+         */
+        public Options ttMegabytes(int megabytes) {
+            this.ttMegabytes = megabytes;
+            return this;
+        }
+        
+        /**
+         * @param evaluator Heurística de las hojas (por defecto un
+         *                  {@link DijkstraEvaluator} nuevo por jugador; p. ej.
+         *                  {@link TwoDistanceEvaluator}).
+         */
+        public Options evaluator(Evaluator evaluator) {
+            this.evaluator = evaluator;
+            return this;
+        }
+        
+        /**
+         * @param threads Número total de hilos de búsqueda (por defecto 1 = secuencial).
+         */
+        public Options threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+        
+        /**
+         * @param parallelism Esquema de reparto del trabajo entre hilos (por
+         *                    defecto {@link Parallelism#LAZY_SMP}).
+         */
+        public Options parallelism(Parallelism parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+        
+        /**
+         * @param ponder Si se sigue buscando la respuesta prevista del rival en
+         *               segundo plano mientras él piensa (por defecto no).
+         */
+        public Options ponder(boolean ponder) {
+            this.ponder = ponder;
+            return this;
+        }
+        
+        /**
+         * @param budget Combinaciones que puede probar {@link HSearch} por nodo
+         *               y jugador para demostrar victorias antes de tiempo (por
+         *               defecto 0 = desactivado; ver {@link HSearch#DEFAULT_BUDGET}).
+         */
+        public Options hsearchBudget(int budget) {
+            this.hsearchBudget = budget;
+            return this;
+        }
+        
+        /**
+         * @param empties Casillas vacías a partir de las cuales se intenta
+         *                resolver la posición con {@link DfpnSolver} antes de
+         *                buscar (por defecto 0 = nunca; ver {@link Sexagono#DEFAULT_SOLVER_EMPTIES}).
+         */
+        public Options solverEmpties(int empties) {
+            this.solverEmpties = empties;
+            return this;
+        }
+    }
+    
     /**
      * Constructor del jugador Sexagono.
      * 
@@ -47,402 +220,1081 @@ public class Sexagono implements IPlayer, IAuto {
      * @param useTimeout Indica si se debe usar límite de tiempo.
     */
     public Sexagono(int depth, boolean useTimeout) {
+        this(depth, useTimeout, new Options());
+    }
+    
+    /**
+     * Constructor del jugador Sexagono con opciones.
+     * 
+     * @param depth Profundidad máxima inicial para la búsqueda Minimax.
+     * @param useTimeout Indica si se debe usar límite de tiempo.
+     * @param options Resto de opciones; se copian, así que se pueden reutilizar.
+    */
+    public Sexagono(int depth, boolean useTimeout, Options options) {
+        this.ponder = options.ponder;
+        this.hsearchBudget = options.hsearchBudget;
+        this.solverEmpties = options.solverEmpties;
         this.MAX_DEPTH = depth;
         this.useTimeout = useTimeout;
+        this.tt = new TranspositionTable(options.ttMegabytes);
+        this.evaluator = options.evaluator != null ? options.evaluator : new DijkstraEvaluator();
+        this.threads = Math.max(1, options.threads);
+        this.parallelism = options.parallelism;
+        this.stats = new SexagonoStats();
     }
 
     @Override
     public void timeout() {
-        if(useTimeout) timeout = !timeout;
+        if(useTimeout) timeout = true;
     }
 
     
     /**
      * Realiza el movimiento del jugador en función del estado actual del juego.
      * 
+     * Con timeout se hace Iterative Deepening: cada iteración ordena las jugadas
+     * de la raíz según las puntuaciones de la anterior y sigue primero su
+     * variante principal. Una iteración interrumpida sólo sustituye al
+     * resultado anterior si llegó a completar la jugada de la variante principal.
+     * 
+     * Si la posición es la de la jugada anterior más nuestra jugada y una
+     * respuesta del rival, la búsqueda se reenraiza: las jugadas de la raíz se
+     * ordenan con lo que ya hay en la tabla de transposiciones y, si el rival ha
+     * respondido lo que preveía la variante principal, se sigue el resto de
+     * ella y se empieza directamente por la profundidad ya explorada.
+     * 
+     * Con más de un hilo (Lazy SMP) los ayudantes buscan la misma posición en
+     * paralelo sobre copias del tablero y llenan la tabla de transposiciones
+     * compartida; la jugada devuelta es siempre la del hilo principal.
+     * 
+     * Con pondering, al devolver la jugada se sigue buscando en segundo plano
+     * la posición tras la respuesta prevista del rival. Si el rival la juega
+     * (acierto), la búsqueda continúa desde la profundidad que alcanzó el
+     * pondering; si no (fallo), se descarta.
+     *
+     * Con H-search, cada nodo con profundidad restante suficiente busca
+     * conexiones virtuales entre los bordes y, si demuestra el ganador, devuelve
+     * el mismo valor que una partida terminada. Si la raíz resulta perdida, se
+     * repite la búsqueda sólo con la heurística para jugar la defensa más larga.
+     * Si el rival tiene semiconexiones entre sus bordes, sólo se prueban las
+     * jugadas de la intersección de sus carriers (mustplay): cualquier otra
+     * pierde, y si no queda ninguna el nodo está perdido.
+     *
+     * Las casillas muertas o capturadas se rellenan en la raíz y en cada nodo
+     * ({@link InferiorCells}), así que nunca se prueban como jugadas.
+     *
+     * Si el solver está activado, con pocas casillas vacías se intenta primero
+     * resolver la posición con {@link DfpnSolver} (con un límite de nodos y de
+     * tiempo, para que no se coma el de la búsqueda si no lo consigue): si
+     * se demuestra la victoria se juega la jugada ganadora sin agotar el tiempo
+     * y, si se demuestra la derrota, la que más ha costado refutar.
+     *
      * @param s Estado actual del juego.
      * @return PlayerMove El movimiento seleccionado.
      */
     @Override
     public PlayerMove move(HexGameStatus s) {
        
+        stopPondering();
+        timeout = false;
         expandedNodes = 0;
-        int bestValue = Integer.MIN_VALUE;
-        int prof = 1;
-        List<MoveNode> moves = s.getMoves();
-        Point bestMove = null; 
+        stats.startMove();
                      
         myPlayer = s.getCurrentPlayer();
         otherPlayer = opposite(myPlayer);
+        // Las puntuaciones dependen de qué jugador somos
+        ttSalt = myPlayer == PlayerType.PLAYER1 ? 0L : 0x9E3779B97F4A7C15L;
         
-        if (!useTimeout) { 
-            for (MoveNode move : moves) {
-                               
-                HexGameStatus copiaTablero = new HexGameStatus(s); 
-                copiaTablero.placeStone(move.getPoint()); 
-                
-                if (copiaTablero.isGameOver())
-                    return new PlayerMove(move.getPoint(), expandedNodes, MAX_DEPTH, SearchType.MINIMAX);
-                
-                int value = minimax(copiaTablero, MAX_DEPTH - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
-                //System.out.println(value);
-
-                if (value > bestValue || bestMove == null) {
-                    bestValue = value;
-                    bestMove = move.getPoint();
-                }       
+        BitBoard board = new BitBoard(s);
+        if (searches == null || searches[0].rootMoves.length != board.getCells()) {
+            searches = new Search[splitting() ? 1 : threads];
+            for (int i = 0; i < searches.length; i++) searches[i] = new Search(i, board.getCells());
+            spareSearches.clear();
+            lastRoot = null;
+            lastPv = new int[board.getCells() + 2];
+            carriedPv = new int[board.getCells() + 2];
+            ponderSearch = null;
+            ponderRoot = null;
+        }
+        
+        // Final resuelto: se juega la ganadora (o la que más resiste) sin buscar más
+        if (board.getEmptyCount() <= solverEmpties) {
+            if (solver == null) solver = new DfpnSolver(DfpnSolver.DEFAULT_TT_MB);
+            long deadline = System.nanoTime() + SOLVER_MILLIS * 1_000_000;
+            int winner = solver.solve(board, SOLVER_NODES, () -> timeout || System.nanoTime() - deadline > 0);
+            stats.add(solver.getNodes(), 0, 0, 0, 0, 0, 0);
+            if (winner != BitBoard.NONE) {
+                lastRoot = null;
+                lastPvLen = 0;
+                timeout = false;
+                stats.iteration(solver.getDepth(), board.toPoint(solver.getBestMove()),
+                        winner == board.getCurrentPlayer() ? Integer.MAX_VALUE : Integer.MIN_VALUE, solver.getNodes());
+                stats.endMove();
+                return new PlayerMove(board.toPoint(solver.getBestMove()), solver.getNodes(), solver.getDepth(),
+                        useTimeout ? SearchType.MINIMAX_IDS : SearchType.MINIMAX);
             }
+            expandedNodes += solver.getNodes();
         }
         
-        else  {
-            
-            while (!timeout) {      
-                for (MoveNode move : moves) {
-                    
-                    HexGameStatus copiaTablero = new HexGameStatus(s);
-                    copiaTablero.placeStone(move.getPoint());
-                   
-                    if (copiaTablero.isGameOver())
-                        return new PlayerMove(move.getPoint(), expandedNodes, prof, SearchType.MINIMAX_IDS);
-                                        
-                    int value = minimax(copiaTablero, prof, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
-              
-                    if (value > bestValue || bestMove == null) {
-                        bestValue = value;
-                        bestMove = move.getPoint();
-                    }
-                }
-                prof++; 
-            }         
-            MAX_DEPTH = prof;
+        reRoot(board);
+        adoptPonder(board);
+        
+        Search main = searches[0];
+        stopHelpers = false;
+        List<Future<?>> helpers = new ArrayList<>(threads - 1);
+        
+        if (splitting()) {
+            // La búsqueda entera corre dentro del pool para que los fork vayan a él
+            forkJoinPool().invoke(ForkJoinTask.adapt(() -> main.run(board)));
+        } else {
+            for (int i = 1; i < threads; i++) {
+                Search helper = searches[i];
+                BitBoard copy = new BitBoard(board);
+                helpers.add(helperPool().submit(() -> helper.run(copy)));
+            }
+            main.run(board);
         }
         
+        stopHelpers = true;
+        for (Future<?> f : helpers) {
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                ex.getCause().printStackTrace();
+            }
+        }
+        for (Search search : searches) expandedNodes += search.nodes;
+        expandedNodes += splitNodes.sumThenReset();
+        
+        lastRoot = board;
+        lastMove = main.bestMove;
+        lastDepth = main.completedDepth;
+        lastPvLen = main.prevPvLen;
+        System.arraycopy(main.prevPv, 0, lastPv, 0, lastPvLen);
+        
         timeout = false;
-        return new PlayerMove(bestMove, expandedNodes, MAX_DEPTH, useTimeout ? SearchType.MINIMAX_IDS: SearchType.MINIMAX);
+        stats.endMove();
+        if (ponder) startPondering(board);
+        return new PlayerMove(board.toPoint(main.bestMove), expandedNodes, main.completedDepth, useTimeout ? SearchType.MINIMAX_IDS: SearchType.MINIMAX);
     }
-
+    
     /**
-     * Algoritmo Minimax con poda Alpha-Beta.
-     * 
-     * @param s Estado actual del juego.
-     * @param depth Profundidad restante.
-     * @param alpha Valor alfa para poda.
-     * @param beta Valor beta para poda.
-     * @param isMaximizing Indica si es el turno del jugador maximizador.
-     * @return Valor heurístico del estado.
+     * Lanza la búsqueda de la posición tras nuestra jugada y la respuesta que
+     * prevé la variante principal, con la tabla de transposiciones compartida.
      */
-    private int minimax(HexGameStatus s, int depth, int alpha, int beta, boolean isMaximizing) {
+    private void startPondering(BitBoard board) {
+        ponderRoot = null;
+        if (lastPvLen < 2) return;
+        BitBoard copy = new BitBoard(board);
+        copy.play(lastPv[0]);
+        if (copy.isGameOver()) return;
+        copy.play(lastPv[1]);
+        if (copy.isGameOver()) return;
         
-        expandedNodes++;
-   
-        if (depth == 0 || timeout) 
-            return evaluateHeuristica(s); 
-            
-        List<MoveNode> moves = s.getMoves();
-
-        if (isMaximizing) {
-            int mejorValor = Integer.MIN_VALUE;
-            for (MoveNode move : moves) {
-               
-                if (timeout) break;
-               
-                HexGameStatus copiaTablero = new HexGameStatus(s);
-                copiaTablero.placeStone(move.getPoint());
-                
-                if (copiaTablero.isGameOver())
-                    return Integer.MAX_VALUE;
-                           
-                int valor = minimax(copiaTablero, depth - 1, alpha, beta, false);
-                mejorValor = Math.max(mejorValor, valor);
-                
-                alpha = Math.max(alpha, mejorValor);
-                if (alpha >= beta) break;
-                    
+        carriedPvLen = lastPvLen - 2;
+        System.arraycopy(lastPv, 2, carriedPv, 0, carriedPvLen);
+        carriedDepth = Math.max(0, lastDepth - 2);
+        if (ponderSearch == null) ponderSearch = new Search(PONDER, board.getCells());
+        Search search = ponderSearch;
+        ponderRoot = copy;
+        stopPonder = false;
+        ponderTask = ponderPool().submit(() -> search.run(copy));
+    }
+    
+    /**
+     * Detiene el pondering en curso, si lo hay, y espera a que termine. Conviene
+     * llamarlo al acabar la partida para no dejar el hilo buscando.
+     */
+    public void stopPondering() {
+        if (ponderTask == null) return;
+        stopPonder = true;
+        try {
+            ponderTask.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            ex.getCause().printStackTrace();
+        }
+        ponderTask = null;
+    }
+    
+    /**
+     * Detiene el pondering, libera los hilos de búsqueda (ayudantes, pondering
+     * y fork/join) y retira el MBean de {@link #enableJmx()}. Conviene llamarlo
+     * al acabar la partida; si el jugador se vuelve a usar, los hilos se crean
+     * de nuevo.
+     */
+    @Override
+    public void close() {
+        stopPondering();
+        ponderRoot = null;
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        if (ponderPool != null) {
+            ponderPool.shutdownNow();
+            ponderPool = null;
+        }
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+            forkJoinPool = null;
+        }
+        stats.unregister();
+    }
+    
+    /**
+     * Publica las estadísticas de búsqueda del jugador en el MBeanServer de la
+     * plataforma ({@link SexagonoStatsMBean}). Se retiran con {@link #close()}
+     * o cuando el jugador deja de ser alcanzable.
+     *
+     * @return Este mismo jugador.
+     */
+    public Sexagono enableJmx() {
+        stats.register(this, getName());
+        return this;
+    }
+    
+    /**
+     * Si la posición es la que se estaba ponderando, la búsqueda hereda su
+     * variante principal y su profundidad completada.
+     */
+    private void adoptPonder(BitBoard board) {
+        if (ponderRoot == null) return;
+        if (ponderRoot.getHash() == board.getHash() && ponderRoot.getEmptyCount() == board.getEmptyCount()) {
+            ponderHits++;
+            if (ponderSearch.completedDepth > carriedDepth) {
+                carriedPvLen = ponderSearch.prevPvLen;
+                System.arraycopy(ponderSearch.prevPv, 0, carriedPv, 0, carriedPvLen);
+                carriedDepth = ponderSearch.completedDepth;
             }
-            return mejorValor;
-        } 
+        } else {
+            ponderMisses++;
+        }
+        ponderRoot = null;
+    }
+    
+    /** Veces que el rival ha jugado la respuesta ponderada. */
+    public long getPonderHits() {
+        return ponderHits;
+    }
+    
+    /** Veces que el rival ha jugado otra respuesta y se ha descartado el pondering. */
+    public long getPonderMisses() {
+        return ponderMisses;
+    }
+    
+    /** Proporción de aciertos del pondering (0 si aún no ha habido ninguno). */
+    public double getPonderHitRate() {
+        long total = ponderHits + ponderMisses;
+        return total == 0 ? 0 : (double) ponderHits / total;
+    }
+    
+    /**
+     * Hilo de pondering, creado la primera vez que se necesita.
+     */
+    private ExecutorService ponderPool() {
+        if (ponderPool == null) {
+            ponderPool = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Sexagono-ponder");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return ponderPool;
+    }
+    
+    /**
+     * Busca la posición nueva a partir de la de la jugada anterior: debe tener
+     * exactamente nuestra jugada y una piedra más del rival. Si su respuesta es
+     * la prevista, hereda el resto de la variante principal y la profundidad
+     * que ya se exploró bajo ella.
+     */
+    private void reRoot(BitBoard board) {
+        carriedPvLen = 0;
+        carriedDepth = 0;
+        if (lastRoot == null || lastMove < 0) return;
         
-        else {
-            int mejorValor = Integer.MAX_VALUE;
-            for (MoveNode move : moves) {
-                
-                if (timeout) break;
-                
-                HexGameStatus copiaTablero = new HexGameStatus(s);
-                copiaTablero.placeStone(move.getPoint());
-                
-                if (copiaTablero.isGameOver())
-                    return Integer.MIN_VALUE;
-                
-                int valor = minimax(copiaTablero, depth - 1, alpha, beta, true);
-                mejorValor = Math.min(mejorValor, valor);
-                
-                beta = Math.min(beta, mejorValor);
-                if (alpha >= beta) break;
+        int me = board.getCurrentPlayer();
+        int reply = -1;
+        for (int c = 0; c < board.getCells(); c++) {
+            if (lastRoot.getPos(c) == board.getPos(c)) continue;
+            if (!lastRoot.isEmpty(c)) return;
+            if (c == lastMove && board.owns(me, c)) continue;
+            if (reply >= 0 || !board.owns(1 - me, c)) return;
+            reply = c;
+        }
+        if (reply < 0 || !board.owns(me, lastMove)) return;
+        
+        if (lastPvLen > 2 && lastPv[0] == lastMove && lastPv[1] == reply) {
+            carriedPvLen = lastPvLen - 2;
+            System.arraycopy(lastPv, 2, carriedPv, 0, carriedPvLen);
+            carriedDepth = Math.max(0, lastDepth - 2);
+        }
+    }
+    
+    /**
+     * Ordena las jugadas de la raíz con las puntuaciones que la tabla de
+     * transposiciones tiene de cada hijo (las desconocidas al final) y pone
+     * primero la jugada de la variante heredada.
+     */
+    private void orderFromCache(BitBoard board, int[] moves, int[] scores, int nMoves) {
+        for (int i = 0; i < nMoves; i++) {
+            board.play(moves[i]);
+            long entry = tt.probe(board.getHash() ^ ttSalt);
+            board.undo();
+            scores[i] = entry != TranspositionTable.MISS ? TranspositionTable.score(entry) : Integer.MIN_VALUE;
+        }
+        sortByScore(moves, scores, nMoves);
+        if (carriedPvLen == 0) return;
+        for (int i = 0; i < nMoves; i++) {
+            if (moves[i] == carriedPv[0]) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = carriedPv[0];
+                break;
             }
-            return mejorValor;
         }
     }
     
     /**
-     * Evalúa heurísticamente el estado del tablero.
-     * 
-     * @param s Estado actual del juego.
-     * @return Valor heurístico.
+     * Pool de hilos ayudantes, creado la primera vez que se necesita.
      */
-    private int evaluateHeuristica(HexGameStatus s) {
-
-        int myDistance = dijkstra(s, myPlayer);
-        int opponentDistance = dijkstra(s, otherPlayer);
-
-        int connectivityScore = (opponentDistance - myDistance) * 10; 
-        return -myDistance + connectivityScore;
-
-
-    }    
-
+    private ExecutorService helperPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread t = new Thread(r, "Sexagono-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return pool;
+    }
+    
+    private boolean splitting() {
+        return parallelism == Parallelism.YOUNG_BROTHERS_WAIT && threads > 1;
+    }
     
     /**
-     * Calcula la distancia más corta usando Dijkstra para evaluar el tablero.
-     * 
-     * @param s Estado del tablero.
-     * @param player Jugador para el cálculo.
-     * @return Distancia más corta.
+     * Pool fork/join de Young Brothers Wait, creado la primera vez que se necesita.
      */
-    public static int dijkstra(HexGameStatus s, PlayerType player) {
+    private ForkJoinPool forkJoinPool() {
+        if (forkJoinPool == null) forkJoinPool = new ForkJoinPool(threads);
+        return forkJoinPool;
+    }
+    
+    /**
+     * Buscador libre para una tarea de hermanos. No se puede usar uno por hilo:
+     * un hilo que espera en un join ejecuta otras tareas mientras su propio
+     * buscador sigue a medias en la pila.
+     */
+    private Search acquireSearch() {
+        Search ts = spareSearches.poll();
+        return ts != null ? ts : new Search(-1, searches[0].rootMoves.length);
+    }
+    
+    private void releaseSearch(Search ts) {
+        ts.flushStats();
+        splitNodes.add(ts.nodes);
+        ts.nodes = 0;
+        ts.flushedNodes = 0;
+        ts.split = null;
+        spareSearches.offer(ts);
+    }
+    
+    /**
+     * Nodo repartido entre tareas: cota compartida, mejor resultado y
+     * cancelación cooperativa cuando algún hermano produce un corte.
+     */
+    private static final class SplitPoint {
+        
+        final SplitPoint parent;
+        final boolean maximizing;
+        volatile int alpha;
+        volatile int beta;
+        volatile boolean cutoff;
+        int best;
+        int bestMove = -1;
         
-        int[][] distancias = new int[s.getSize()][s.getSize()];
-        PriorityQueue<Node> pQueue = new PriorityQueue<>((a, b) -> Integer.compare(a.dist, b.dist));
-        Node[][] visitados = new Node[s.getSize()][s.getSize()];
+        SplitPoint(SplitPoint parent, boolean maximizing, int alpha, int beta) {
+            this.parent = parent;
+            this.maximizing = maximizing;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
         
-        for (int i = 0; i < s.getSize(); i++) {
-            for (int j = 0; j < s.getSize(); j++) {
-                distancias[i][j] = Integer.MAX_VALUE;
+        synchronized void report(int move, int value) {
+            if (bestMove < 0 || (maximizing ? value > best : value < best)) {
+                best = value;
+                bestMove = move;
             }
+            if (maximizing) alpha = Math.max(alpha, value);
+            else beta = Math.min(beta, value);
+            if (alpha >= beta) cutoff = true;
         }
-
-        if (player == PlayerType.PLAYER1) {
-            int pcolor = getColor(player);
-            for (int i = 0; i < s.getSize(); i++) {
-                Point p = new Point(0, i);
-                if (s.getPos(p) == pcolor) {
-                    distancias[0][i] = 0;
-                    pQueue.add(new Node(p, 0));
-                }
-                else if (s.getPos(p) == 0) {
-                    distancias[0][i] = 2;
-                    pQueue.add(new Node(p, 2));
-                }
+        
+        /** Un corte en cualquier nodo repartido superior también cancela este. */
+        boolean cancelled() {
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                if (sp.cutoff) return true;
             }
-        } 
+            return false;
+        }
+    }
+    
+    /**
+     * Búsqueda de un hermano menor sobre su propia copia del tablero, hecha al
+     * empezar la tarea (las cortadas antes de empezar no copian nada).
+     */
+    private final class SiblingTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        final SplitPoint sp;
+        // Tablero del nodo repartido: no cambia hasta que terminan todas sus tareas
+        final BitBoard parent;
+        final int move;
+        final int index;
+        final int depth;
+        final int ply;
+        final int[] scores;
+        final boolean[] done;
+        final boolean proofs;
+        final long keySalt;
+        
+        SiblingTask(SplitPoint sp, BitBoard parent, int move, int index, int depth, int ply, int[] scores, boolean[] done,
+                    boolean proofs, long keySalt) {
+            this.sp = sp;
+            this.parent = parent;
+            this.move = move;
+            this.index = index;
+            this.depth = depth;
+            this.ply = ply;
+            this.scores = scores;
+            this.done = done;
+            this.proofs = proofs;
+            this.keySalt = keySalt;
+        }
+        
+        @Override
+        protected void compute() {
+            if (timeout || sp.cancelled()) return;
+            Search ts = acquireSearch();
+            try {
+                BitBoard board = ts.copyBoard(parent);
+                ts.board = board;
+                ts.split = sp;
+                ts.followPv = false;
+                ts.prevPvLen = 0;
+                ts.proofs = proofs;
+                ts.keySalt = keySalt;
                 
-        else {
-            int pcolor = getColor(player);
-            for (int i = 0; i < s.getSize(); i++) {
-                Point p = new Point(i, 0);
-                if (s.getPos(p) == pcolor) {
-                    distancias[i][0] = 0;
-                    pQueue.add(new Node(p, 0));
+                board.play(move);
+                int value;
+                if (board.isGameOver()) {
+                    value = sp.maximizing ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+                } else {
+                    value = ts.minimax(depth - 1, ply + 1, sp.alpha, sp.beta, !sp.maximizing);
+                    if (ts.stopped()) return;
                 }
-                else if (s.getPos(p) == 0) {
-                    distancias[i][0] = 2;
-                    pQueue.add(new Node(p, 2));
+                if (scores != null) {
+                    scores[index] = value;
+                    done[index] = true;
                 }
+                sp.report(move, value);
+            } finally {
+                releaseSearch(ts);
             }
         }
+    }
+    
+    /**
+     * Rota las jugadas {@code k} posiciones a la izquierda.
+     */
+    private static void rotate(int[] moves, int n, int k) {
+        if (k == 0) return;
+        int[] tmp = java.util.Arrays.copyOf(moves, k);
+        System.arraycopy(moves, k, moves, 0, n - k);
+        System.arraycopy(tmp, 0, moves, n - k, k);
+    }
+    
+    /**
+     * Ordenación por inserción estable, de mayor a menor puntuación.
+     */
+    private static void sortByScore(int[] moves, int[] scores, int n) {
+        for (int i = 1; i < n; i++) {
+            int m = moves[i], v = scores[i], j = i - 1;
+            while (j >= 0 && scores[j] < v) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = m;
+            scores[j + 1] = v;
+        }
+    }
+    
+    /**
+     * Estado de una búsqueda Iterative Deepening sobre su propio tablero.
+     * 
+     * El hilo principal usa el buscador 0; los ayudantes de Lazy SMP usan el
+     * resto y sólo comparten con él la tabla de transposiciones.
+     */
+    private class Search {
         
-        while (!pQueue.isEmpty()) {
-            
-            Node currentNode = pQueue.poll();
+        final int id;
+        final int[] rootMoves;
+        final int[] rootScores;
+        final int[][] moveBuffers;
+        // Variante principal: tabla triangular de la iteración en curso y la de la anterior
+        final int[][] pv;
+        final int[] pvLen;
+        final int[] prevPv;
+        int prevPvLen;
+        boolean followPv;
+        final MoveOrdering ordering;
+        final HSearch hsearch;
+        final InferiorCells inferior = new InferiorCells();
+        // Mustplay de cada ply, como máscara de casillas
+        final long[][] mustplay;
+        // Si se usan las demostraciones de H-search y sal de las claves de la tabla
+        boolean proofs;
+        long keySalt;
+        final boolean[] rootDone;
+        BitBoard board;
+        // Tablero propio de las tareas de hermanos, reutilizado de una tarea a otra
+        BitBoard own;
+        SplitPoint split;
+        long nodes;
+        int bestMove;
+        int completedDepth;
+        // Contadores para las estadísticas, pendientes de volcar
+        long flushedNodes;
+        long interiorNodes;
+        long cutoffs;
+        long firstMoveCutoffs;
+        long evaluations;
+        long evalSamples;
+        long evalSampleNanos;
+        
+        Search(int id, int cells) {
+            int maxPly = cells + 2;
+            this.id = id;
+            this.rootMoves = new int[cells];
+            this.rootScores = new int[cells];
+            this.moveBuffers = new int[maxPly][cells];
+            this.pv = new int[maxPly][maxPly];
+            this.pvLen = new int[maxPly];
+            this.prevPv = new int[maxPly];
+            this.ordering = new MoveOrdering(cells, maxPly);
+            this.hsearch = hsearchBudget > 0 ? new HSearch(hsearchBudget) : null;
+            this.mustplay = new long[maxPly][(cells + 63) >>> 6];
+            this.rootDone = new boolean[cells];
+        }
+        
+        /**
+         * Los ayudantes paran también cuando el hilo principal ha terminado, el
+         * pondering cuando llega la siguiente jugada y las tareas de hermanos
+         * cuando su nodo repartido ha sido cortado.
+         */
+        boolean stopped() {
+            return timeout || (id > 0 && stopHelpers) || (id == PONDER && stopPonder)
+                    || (split != null && split.cancelled());
+        }
+        
+        /**
+         * Copia la posición en el tablero propio del buscador, creándolo la
+         * primera vez.
+         */
+        BitBoard copyBoard(BitBoard from) {
+            if (own == null || own.geo != from.geo) own = new BitBoard(from);
+            else own.copyFrom(from);
+            return own;
+        }
+        
+        /**
+         * Reparte entre tareas fork/join los hermanos {@code from..nMoves-1} del
+         * nodo actual y espera a que terminen.
+         * 
+         * @return El nodo repartido, con el mejor resultado de los hermanos.
+         */
+        SplitPoint splitSiblings(int[] moves, int from, int nMoves, int depth, int ply,
+                                 int alpha, int beta, boolean maximizing, int[] scores, boolean[] done) {
+            SplitPoint sp = new SplitPoint(split, maximizing, alpha, beta);
+            List<SiblingTask> tasks = new ArrayList<>(nMoves - from);
+            for (int i = from; i < nMoves; i++) 
+                tasks.add(new SiblingTask(sp, board, moves[i], i, depth, ply, scores, done, proofs, keySalt));
+            ForkJoinTask.invokeAll(tasks);
+            return sp;
+        }
+        
+        /**
+         * Iterative Deepening desde la posición dada. Deja el resultado en
+         * {@link #bestMove} y {@link #completedDepth}.
+         * 
+         * Los ayudantes empiezan con las jugadas de la raíz rotadas y se saltan
+         * una de cada dos profundidades (alternando según su id), para no
+         * repetir exactamente el trabajo del hilo principal.
+         */
+        void run(BitBoard root) {
             
-            if (visitados[currentNode.getPoint().x][currentNode.getPoint().y] != null) 
-                continue;
-                   
-            visitados[currentNode.getPoint().x][currentNode.getPoint().y] = currentNode;
-           
-            if (player == PlayerType.PLAYER1 && currentNode.point.x == s.getSize() - 1) { 
-                //List<Point> path = reconstruirCamino(currentNode);
-                //System.out.println("Camino más corto: " + path);
-                return currentNode.dist;
+            board = root;
+            nodes = 0;
+            flushedNodes = 0;
+            prevPvLen = 0;
+            bestMove = -1;
+            completedDepth = 0;
+            ordering.newSearch();
+            // Las casillas muertas o capturadas de la raíz quedan rellenadas durante
+            // toda la búsqueda; si el relleno ya decide la partida se busca sin él
+            int filled = inferior.fillIn(board);
+            if (board.isGameOver()) {
+                for (; filled > 0; filled--) board.undo();
             }
-            
-            else if (player == PlayerType.PLAYER2 && currentNode.point.y == s.getSize() - 1) {
-                //List<Point> path = reconstruirCamino(currentNode);
-                //System.out.println("Camino más corto: " + path);
-                return currentNode.dist;       
+            // Conexiones de la raíz, que heredan los nodos de debajo
+            boolean restricted = hsearch != null && hsearch.prove(board) == BitBoard.NONE
+                    && hsearch.mustplay(mustplay[0]);
+            int[] moves = rootMoves;
+            int[] scores = rootScores;
+            int nMoves = board.getMoves(moves);
+            // Con la mustplay vacía todo pierde: se dejan todas para buscar la que más resiste
+            if (restricted) {
+                int n = restrict(moves, nMoves, mustplay[0]);
+                if (n > 0) nMoves = n;
+            }
+            if (lastRoot != null) orderFromCache(board, moves, scores, nMoves);
+            if (id > 0 && nMoves > 1) rotate(moves, nMoves, (id * 7) % nMoves);
+            if (carriedPvLen > 0) {
+                prevPvLen = carriedPvLen;
+                System.arraycopy(carriedPv, 0, prevPv, 0, prevPvLen);
             }
             
-            ArrayList<Point> vecinos = s.getNeigh(currentNode.point);
-            ArrayList<Point> bridges = new ArrayList<>();
-            ArrayList<Point> intermediate = new ArrayList<>();
-            addBridges(s, bridges, currentNode);
-            int cellStatus;
-            for (Point bridge : bridges){
-
-                cellStatus = s.getPos(bridge);
-                if (cellStatus == s.getCurrentPlayerColor() && s.getPos(currentNode.getPoint()) == s.getCurrentPlayerColor()){
-                    addIntermediate(s, intermediate, currentNode.getPoint() ,bridge);
-                }
+            int firstDepth = useTimeout ? Math.max(1, carriedDepth) : MAX_DEPTH;
+            int lastDepth = useTimeout ? board.getEmptyCount() : MAX_DEPTH;
+            
+            proofs = true;
+            keySalt = 0;
+            deepen(moves, scores, nMoves, firstDepth, lastDepth);
+            
+            // Derrota demostrada por H-search: todas las jugadas valen lo mismo, así
+            // que se vuelve a buscar sólo con la heurística para jugar la que más
+            // resiste. Los valores de la tabla derivados de demostraciones no sirven,
+            // de ahí la sal distinta.
+            if (hsearch != null && completedDepth > 0 && scores[0] == Integer.MIN_VALUE && !stopped()) {
+                proofs = false;
+                keySalt = 0x5851F42D4C957F2DL;
+                prevPvLen = 0;
+                deepen(moves, scores, nMoves, useTimeout ? 1 : MAX_DEPTH, lastDepth);
             }
-            for (Point vecino : vecinos) {
+            
+            if (bestMove < 0) bestMove = moves[0];
+            for (; filled > 0; filled--) board.undo();
+            flushStats();
+        }
+        
+        /**
+         * Vuelca en {@link #stats} los contadores acumulados desde el último volcado.
+         */
+        void flushStats() {
+            stats.add(nodes - flushedNodes, interiorNodes, cutoffs, firstMoveCutoffs,
+                    evaluations, evalSamples, evalSampleNanos);
+            flushedNodes = nodes;
+            interiorNodes = 0;
+            cutoffs = 0;
+            firstMoveCutoffs = 0;
+            evaluations = 0;
+            evalSamples = 0;
+            evalSampleNanos = 0;
+        }
+        
+        /**
+         * Bucle de Iterative Deepening entre las dos profundidades dadas.
+         */
+        void deepen(int[] moves, int[] scores, int nMoves, int firstDepth, int lastDepth) {
+            for (int prof = firstDepth; prof <= lastDepth; prof++) {
                 
-                int vecinoCost = Integer.MAX_VALUE;
-                cellStatus = s.getPos(vecino);
+                if (id > 0 && prof < lastDepth && ((prof + id) & 1) == 1) continue;
                 
-                if(intermediate.contains(vecino)){
+                long before = nodes;
+                int completed = searchRoot(moves, scores, nMoves, prof);
+                if (completed == 0) break;
                 
-                    vecinoCost = 1;
+                bestMove = moves[0];
+                completedDepth = prof;
+                if (id == 0) stats.iteration(prof, board.toPoint(bestMove), scores[0], nodes - before);
+                prevPvLen = pvLen[0];
+                System.arraycopy(pv[0], 0, prevPv, 0, prevPvLen);
                 
+                // Interrumpida, victoria segura o derrota segura: no hay nada más que buscar
+                if (completed < nMoves || scores[0] == Integer.MAX_VALUE || scores[0] == Integer.MIN_VALUE) 
+                    break;
+            }
+        }
+        
+        /**
+         * Busca todas las jugadas de la raíz a la profundidad indicada.
+         * 
+         * Al terminar, las jugadas completadas quedan ordenadas de mayor a menor
+         * puntuación al principio de {@code moves} (la mejor en la posición 0) y las
+         * no completadas conservan el orden de la iteración anterior.
+         * 
+         * @param moves Jugadas de la raíz, en el orden en el que se probarán.
+         * @param scores Puntuaciones de cada jugada.
+         * @param nMoves Número de jugadas.
+         * @param depth Profundidad total de la iteración.
+         * @return Número de jugadas completadas antes del timeout.
+         */
+        int searchRoot(int[] moves, int[] scores, int nMoves, int depth) {
+        
+            int alpha = Integer.MIN_VALUE;
+            int completed = 0;
+            pvLen[0] = 0;
+        
+            for (int i = 0; i < nMoves; i++) {
+            
+                if (stopped()) break;
+            
+                board.play(moves[i]);
+            
+                if (board.isGameOver()) {
+                    board.undo();
+                    scores[i] = Integer.MAX_VALUE;
+                    completed = i + 1;
+                    pv[0][0] = moves[i];
+                    pvLen[0] = 1;
+                    break;
                 }
-                else{
-                
-                    if (cellStatus == s.getCurrentPlayerColor()) 
-                        vecinoCost = 0; 
-
-                    else if (cellStatus == 0) 
-                        vecinoCost = 2;
-
-                    else
-                        continue;
-                
+            
+                followPv = i == 0 && prevPvLen > 0 && prevPv[0] == moves[i];
+                int value = minimax(depth - 1, 1, alpha, Integer.MAX_VALUE, false);
+                board.undo();
+            
+                // El valor de una búsqueda interrumpida no es fiable
+                if (stopped()) break;
+            
+                scores[i] = value;
+                completed = i + 1;
+                if (i == 0 || value > alpha) {
+                    alpha = Math.max(alpha, value);
+                    updatePv(0, moves[i]);
                 }
                 
-
-                int newCost = currentNode.dist + vecinoCost;
-                if (newCost < distancias[vecino.x][vecino.y]) {
-                    distancias[vecino.x][vecino.y] = newCost;
-                    Node newNode = new Node(vecino, newCost);
-                    //newNode.parent = currentNode;
-                    pQueue.add(newNode);
-                } 
+                // Young Brothers Wait: el primogénito ya ha fijado la cota, el resto en paralelo
+                if (i == 0 && splitting() && id != PONDER && nMoves > 1) {
+                    java.util.Arrays.fill(rootDone, 0, nMoves, false);
+                    SplitPoint sp = splitSiblings(moves, 1, nMoves, depth, 0, alpha, Integer.MAX_VALUE, true, scores, rootDone);
+                    completed = 1 + compactDone(moves, scores, rootDone, nMoves);
+                    if (sp.bestMove >= 0 && sp.best > alpha) {
+                        pv[0][0] = sp.bestMove;
+                        pvLen[0] = 1;
+                    }
+                    break;
+                }
             }
-        }
         
-        return Integer.MAX_VALUE;
-        
-    }
+            sortByScore(moves, scores, completed);
+            return completed;
+        }
     
-    private static void addBridges(HexGameStatus s, ArrayList<Point> bridges, Node currentNode) {
-        int x = currentNode.getPoint().x;
-        int y = currentNode.getPoint().y;
-        int size = s.getSize();
-
-        // Posiciones relativas de los bridges
-        // A = [x-2, y+1]
-        // B = [x+2, y-1]
-        // C = [x+1, y+1]
-        // D = [x-1, y-1]
-        // E = [x+1, y-2]
-        // F = [x-1, y+2]
-        
-        //Posibles bloqueos
-        // [x+1, y-1] --> E,B
-        // [x+1, y] --> B,C
-        // [x, y+1] --> C,F
-        // [x-1, y+1] --> F,A
-        // [x-1, y] --> A,D
-        // [x, y-1] --> D,E
-        // Si s.getPos(x,y) == -1; no añadir los puntos bloqueados
-
-        // Posiciones relativas de los bridges (A, B, C, D, E, F)
-        int[][] offsets = {
-            {-2, 1}, {2, -1}, {1, 1}, {-1, -1}, {1, -2}, {-1, 2}
-        };
-
-        // Posibles bloqueos y sus puntos asociados
-        int[][][] blocks = {
-            {{1, -1}},  // E, B
-            {{1, 0}},   // B, C
-            {{0, 1}},   // C, F
-            {{-1, 1}},  // F, A
-            {{-1, 0}},  // A, D
-            {{0, -1}}   // D, E
-        };
-
-        for (int i = 0; i < offsets.length; i++) {
-            int newX = x + offsets[i][0];
-            int newY = y + offsets[i][1];
-
-            if (newX >= 0 && newX < size && newY >= 0 && newY < size) {
-                boolean blocked = false;
+        /**
+         * Deja en {@code moves} sólo las jugadas de la mustplay, en el mismo orden.
+         * 
+         * @return Número de jugadas que quedan.
+         */
+        int restrict(int[] moves, int nMoves, long[] must) {
+            int k = 0;
+            for (int i = 0; i < nMoves; i++) {
+                int c = moves[i];
+                if ((must[c >>> 6] & (1L << c)) != 0) moves[k++] = c;
+            }
+            return k;
+        }
+    
+        /**
+         * Deja justo detrás de la primera jugada las completadas por las tareas,
+         * conservando su orden, y después las no completadas.
+         * 
+         * @return Número de jugadas completadas por las tareas.
+         */
+        int compactDone(int[] moves, int[] scores, boolean[] done, int nMoves) {
+            int[] tmpMoves = moveBuffers[1];
+            int[] tmpScores = moveBuffers[2];
+            int k = 0;
+            for (int i = 1; i < nMoves; i++) {
+                if (done[i]) {
+                    tmpMoves[k] = moves[i];
+                    tmpScores[k++] = scores[i];
+                }
+            }
+            int count = k;
+            for (int i = 1; i < nMoves; i++) {
+                if (!done[i]) {
+                    tmpMoves[k] = moves[i];
+                    tmpScores[k++] = scores[i];
+                }
+            }
+            System.arraycopy(tmpMoves, 0, moves, 1, nMoves - 1);
+            System.arraycopy(tmpScores, 0, scores, 1, nMoves - 1);
+            return count;
+        }
+        
+        /**
+         * Registra {@code move} como mejor jugada en {@code ply} seguida de la
+         * variante principal del hijo.
+         */
+        void updatePv(int ply, int move) {
+            pv[ply][ply] = move;
+            int len = Math.max(pvLen[ply + 1], ply + 1);
+            for (int j = ply + 1; j < len; j++) pv[ply][j] = pv[ply + 1][j];
+            pvLen[ply] = len;
+        }
 
-                for (int[] block : blocks[i]) {
-                    int blockX = x + block[0];
-                    int blockY = y + block[1];
+        /**
+         * Algoritmo Minimax con poda Alpha-Beta sobre el tablero de búsqueda.
+         * Cada hijo se genera con play/undo sobre el mismo {@link BitBoard}.
+         * 
+         * Antes de expandir un nodo se rellenan las casillas que la última
+         * jugada ha dejado muertas o capturadas ({@link InferiorCells}), que así
+         * tampoco se prueban en los nodos de debajo, y se deshacen al salir.
+         * 
+         * @param depth Profundidad restante.
+         * @param ply Distancia a la raíz, para elegir el buffer de movimientos.
+         * @param alpha Valor alfa para poda.
+         * @param beta Valor beta para poda.
+         * @param isMaximizing Indica si es el turno del jugador maximizador.
+         * @return Valor heurístico del estado.
+         */
+        int minimax(int depth, int ply, int alpha, int beta, boolean isMaximizing) {
+        
+            nodes++;
+            if ((nodes & STATS_FLUSH_MASK) == 0) flushStats();
+            pvLen[ply] = ply;
+   
+            if (depth == 0 || stopped()) 
+                return evaluate(); 
+            
+            // La jugada del rival, antes de que el relleno la tape como última
+            int intrusion = board.lastMove();
+            int filled = inferior.fillAround(board, intrusion);
+            int value;
+            if (board.isGameOver())
+                value = board.getWinner() == PlayerType.to_01(myPlayer) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            else
+                value = expand(depth, ply, alpha, beta, isMaximizing, intrusion);
+            for (; filled > 0; filled--) board.undo();
+            return value;
+        }
+        
+        /**
+         * Evalúa la hoja actual, cronometrando una muestra de las evaluaciones.
+         */
+        private int evaluate() {
+            evaluations++;
+            if ((nodes & EVAL_SAMPLE_MASK) != 0) return evaluateHeuristica(board);
+            long start = System.nanoTime();
+            int value = evaluateHeuristica(board);
+            evalSampleNanos += System.nanoTime() - start;
+            evalSamples++;
+            return value;
+        }
+        
+        /**
+         * Cuerpo de {@link #minimax}: tabla de transposiciones, H-search y
+         * recorrido de los hijos.
+         */
+        private int expand(int depth, int ply, int alpha, int beta, boolean isMaximizing, int intrusion) {
+        
+            long key = board.getHash() ^ ttSalt ^ keySalt;
+            long entry = tt.probe(key);
+            int ttMove = -1;
+            if (entry != TranspositionTable.MISS) {
+                ttMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    switch (TranspositionTable.bound(entry)) {
+                        case TranspositionTable.EXACT:
+                            return score;
+                        case TranspositionTable.LOWER:
+                            alpha = Math.max(alpha, score);
+                            break;
+                        default:
+                            beta = Math.min(beta, score);
+                            break;
+                    }
+                    if (alpha >= beta) return score;
+                }
+            }
+            // Una conexión ganadora demostrada vale lo mismo que la partida terminada
+            boolean restricted = false;
+            if (hsearch != null && proofs && depth >= HSEARCH_MIN_DEPTH) {
+                int winner = hsearch.prove(board);
+                if (winner != BitBoard.NONE)
+                    return winner == PlayerType.to_01(myPlayer) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+                restricted = hsearch.mustplay(mustplay[ply]);
+            }
+            int alphaOrig = alpha;
+            int betaOrig = beta;
+            
+            int[] moves = moveBuffers[ply];
+            int nMoves = board.getMoves(moves);
+            if (restricted) {
+                nMoves = restrict(moves, nMoves, mustplay[ply]);
+                // Ninguna jugada corta todas las amenazas del rival
+                if (nMoves == 0) return isMaximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            }
+            int pvMove = followPv && ply < prevPvLen ? prevPv[ply] : -1;
+            // Si el rival acaba de entrar en un puente nuestro, primero se prueba a salvarlo
+            int reply = intrusion >= 0 ? board.getVirtualConnections().bridgeReply(board.getCurrentPlayer(), intrusion) : -1;
+            ordering.order(moves, nMoves, ply, board.getCurrentPlayer(), pvMove, ttMove, reply);
+            followPv = pvMove >= 0 && nMoves > 0 && moves[0] == pvMove;
+            boolean splitHere = followPv && splitting() && id != PONDER && depth >= SPLIT_MIN_DEPTH && nMoves > 2;
+            interiorNodes++;
+            int mejorMov = -1;
+            int mejorValor;
 
-                    if (blockX >= 0 && blockX < size && blockY >= 0 && blockY < size) {
-                        if (s.getPos(blockX, blockY) == -1 || s.getPos(blockX, blockY) == 1) {
-                            blocked = true;
-                            break; 
+            if (isMaximizing) {
+                mejorValor = Integer.MIN_VALUE;
+                for (int i = 0; i < nMoves; i++) {
+               
+                    if (stopped()) break;
+               
+                    board.play(moves[i]);
+                
+                    if (board.isGameOver()) {
+                        board.undo();
+                        return Integer.MAX_VALUE;
+                    }
+                           
+                    if (i > 0) followPv = false;
+                    int valor = minimax(depth - 1, ply + 1, alpha, beta, false);
+                    board.undo();
+                    if (valor > mejorValor || mejorMov == -1) {
+                        mejorValor = valor;
+                        mejorMov = moves[i];
+                        if (valor > alpha) updatePv(ply, moves[i]);
+                    }
+                
+                    alpha = Math.max(alpha, mejorValor);
+                    if (alpha >= beta) {
+                        ordering.onCutoff(ply, board.getCurrentPlayer(), moves[i], depth);
+                        cutoffs++;
+                        if (i == 0) firstMoveCutoffs++;
+                        break;
+                    }
+                    
+                    if (i == 0 && splitHere) {
+                        SplitPoint sp = splitSiblings(moves, 1, nMoves, depth, ply, alpha, beta, true, null, null);
+                        if (sp.bestMove >= 0 && sp.best > mejorValor) {
+                            mejorValor = sp.best;
+                            mejorMov = sp.bestMove;
+                            pv[ply][ply] = mejorMov;
+                            pvLen[ply] = ply + 1;
+                            if (sp.cutoff) {
+                                ordering.onCutoff(ply, board.getCurrentPlayer(), mejorMov, depth);
+                                cutoffs++;
+                            }
                         }
+                        break;
                     }
+                    
                 }
-
-                if (!blocked) {
-                    bridges.add(new Point(newX, newY));
+            } 
+        
+            else {
+                mejorValor = Integer.MAX_VALUE;
+                for (int i = 0; i < nMoves; i++) {
+                
+                    if (stopped()) break;
+                
+                    board.play(moves[i]);
+                
+                    if (board.isGameOver()) {
+                        board.undo();
+                        return Integer.MIN_VALUE;
+                    }
+                
+                    if (i > 0) followPv = false;
+                    int valor = minimax(depth - 1, ply + 1, alpha, beta, true);
+                    board.undo();
+                    if (valor < mejorValor || mejorMov == -1) {
+                        mejorValor = valor;
+                        mejorMov = moves[i];
+                        if (valor < beta) updatePv(ply, moves[i]);
+                    }
+                
+                    beta = Math.min(beta, mejorValor);
+                    if (alpha >= beta) {
+                        ordering.onCutoff(ply, board.getCurrentPlayer(), moves[i], depth);
+                        cutoffs++;
+                        if (i == 0) firstMoveCutoffs++;
+                        break;
+                    }
+                    
+                    if (i == 0 && splitHere) {
+                        SplitPoint sp = splitSiblings(moves, 1, nMoves, depth, ply, alpha, beta, false, null, null);
+                        if (sp.bestMove >= 0 && sp.best < mejorValor) {
+                            mejorValor = sp.best;
+                            mejorMov = sp.bestMove;
+                            pv[ply][ply] = mejorMov;
+                            pvLen[ply] = ply + 1;
+                            if (sp.cutoff) {
+                                ordering.onCutoff(ply, board.getCurrentPlayer(), mejorMov, depth);
+                                cutoffs++;
+                            }
+                        }
+                        break;
+                    }
                 }
             }
+        
+            // Un resultado cortado por el timeout no es fiable: no se guarda
+            if (!stopped()) {
+                int bound = mejorValor <= alphaOrig ? TranspositionTable.UPPER
+                          : mejorValor >= betaOrig ? TranspositionTable.LOWER
+                          : TranspositionTable.EXACT;
+                tt.store(key, depth, bound, mejorValor, mejorMov);
+            }
+            return mejorValor;
         }
     }
     
-    private static void addIntermediate(HexGameStatus s, ArrayList<Point> intermediates, Point p1, Point p2) {
-        // Obtener vecinos de cada punto
-        ArrayList<Point> neighborsP1 = s.getNeigh(p1);
-        ArrayList<Point> neighborsP2 = s.getNeigh(p2);
+    /**
+     * Evalúa heurísticamente el estado del tablero.
+     * 
+     * @param s Estado actual del juego.
+     * @return Valor heurístico.
+     */
+    private int evaluateHeuristica(BitBoard s) {
+        return evaluator.evaluate(s, PlayerType.to_01(myPlayer));
+    }    
 
-        // Buscar vecinos comunes
-        int i = 0;
-        for (Point n1 : neighborsP1) {
-            if (s.getPos(n1) == -1)
-                continue;
-            if (i == 2) break;
-            for (Point n2 : neighborsP2) {
-                // Si los puntos vecinos son iguales, añádelos a la lista
-                if (n1.equals(n2)) {
-                    intermediates.add(n1);
-                    ++i;
-                }
-            }
-        }
+    
+    /**
+     * Calcula la distancia más corta usando Dijkstra para evaluar el tablero.
+     * 
+     * @param s Estado del tablero.
+     * @param player Jugador para el cálculo.
+     * @return Distancia más corta.
+     */
+    public static int dijkstra(HexGameStatus s, PlayerType player) {
+        return dijkstra(new BitBoard(s), player);
     }
 
-
-    private static List<Point> reconstruirCamino(Node endNode) {
-        LinkedList<Point> camino = new LinkedList<>();
-        Node actual = endNode;
-        while (actual != null) {
-            camino.addFirst(actual.point);
-            actual = actual.parent;
-        }
-        return camino;
+    /**
+     * Calcula la distancia más corta sobre el tablero de búsqueda.
+     * Ver {@link ShortestPath#distance(BitBoard, int)}.
+     * 
+     * @param s Tablero de búsqueda.
+     * @param player Jugador para el cálculo.
+     * @return Distancia más corta.
+     */
+    public static int dijkstra(BitBoard s, PlayerType player) {
+        return ShortestPath.distance(s, PlayerType.to_01(player));
     }
 
     @Override
     public String getName() {
         return "Sexagono";
     }
-    
-    
-    /**
-     * Clase interna para representar nodos en la búsqueda.
-     */
-    public static class Node {
-        Point point; 
-        int dist;    
-        Node parent;
-
-        public Node(Point point, int dist) {
-            this.point = point;
-            this.dist = dist;
-            this.parent = null;
-        }
-
-        public Point getPoint() {
-            return point;
-        }
-
-        public int getDist() {
-            return dist;
-        }
-    }   
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import edu.upc.epsevg.prop.hex.HexGameStatus;
+import edu.upc.epsevg.prop.hex.IAuto;
+import edu.upc.epsevg.prop.hex.IPlayer;
+import edu.upc.epsevg.prop.hex.PlayerMove;
+import edu.upc.epsevg.prop.hex.SearchType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Jugador Monte Carlo Tree Search (UCT con RAVE/AMAF) para Hex.
+ *
+ * El árbol vive en un {@link MctsTree} de arrays planos reservado una sola vez.
+ * Cada simulación baja por el árbol con play/undo sobre un {@link BitBoard} y
+ * termina con una partida aleatoria por relleno de {@link Playout}. El dueño
+ * final de cada casilla alimenta las estadísticas RAVE de todos los nodos del
+ * camino.
+ *
+ * Con varios hilos hay dos esquemas (ver {@link Parallelism}): árboles
+ * independientes que se suman al final o un único árbol compartido con
+ * contadores atómicos y pérdida virtual.
+ *
+ * Respeta el timeout igual que {@link Sexagono} y devuelve el número de
+ * simulaciones como nodos explorados.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class SexagonoMCTS implements IPlayer, IAuto, AutoCloseable {
+
+    /** Nodos del árbol por defecto (unos 56 MB). */
+    public static final int DEFAULT_CAPACITY = 2_000_000;
+
+    /**
+     * Esquemas de búsqueda paralela.
+     */
+    public enum Parallelism {
+        /** Un árbol por hilo; se suman las visitas de cada jugada de la raíz. */
+        ROOT_PARALLEL,
+        /** Un árbol compartido con contadores atómicos y pérdida virtual. */
+        TREE_PARALLEL
+    }
+
+    private final int maxIterations;
+    private final boolean useTimeout;
+    private volatile boolean timeout = false;
+    private final int capacity;
+    private final int threads;
+    private final Parallelism parallelism;
+
+    private Worker[] workers;
+    private ExecutorService pool;
+
+    /**
+     * Opciones del jugador más allá de las simulaciones y el timeout, como
+     * {@link Sexagono.Options}. Por defecto un hilo y un árbol de
+     * {@link #DEFAULT_CAPACITY} nodos; p. ej.
+     * {@code new SexagonoMCTS(0, true, new SexagonoMCTS.Options().threads(4))}.
+     */
+    public static final class Options {
+
+        private int capacity = DEFAULT_CAPACITY;
+        private int threads = 1;
+        private Parallelism parallelism = Parallelism.TREE_PARALLEL;
+
+        /**
+         * @param capacity Número máximo de nodos, repartido entre los árboles en
+         *                 {@link Parallelism#ROOT_PARALLEL} (por defecto
+         *                 {@link SexagonoMCTS#DEFAULT_CAPACITY}).
+         */
+        public Options capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param threads Número de hilos de búsqueda (por defecto 1 = secuencial).
+         */
+        public Options threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param parallelism Esquema de búsqueda paralela (por defecto
+         *                    {@link Parallelism#TREE_PARALLEL}).
+         */
+        public Options parallelism(Parallelism parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+    }
+
+    /**
+     * Constructor del jugador MCTS.
+     *
+     * @param iterations Simulaciones por jugada si no se usa timeout.
+     * @param useTimeout Indica si se debe usar límite de tiempo.
+     */
+    public SexagonoMCTS(int iterations, boolean useTimeout) {
+        this(iterations, useTimeout, new Options());
+    }
+
+    /**
+     * Constructor del jugador MCTS con opciones.
+     *
+     * @param iterations Simulaciones por jugada, entre todos los hilos, si no
+     *                   se usa timeout.
+     * @param useTimeout Indica si se debe usar límite de tiempo.
+     * @param options Resto de opciones; se copian, así que se pueden reutilizar.
+     */
+    public SexagonoMCTS(int iterations, boolean useTimeout, Options options) {
+        this.maxIterations = iterations;
+        this.useTimeout = useTimeout;
+        this.capacity = options.capacity;
+        this.threads = Math.max(1, options.threads);
+        this.parallelism = options.parallelism;
+    }
+
+    @Override
+    public void timeout() {
+        if (useTimeout) timeout = true;
+    }
+
+    /**
+     * Realiza el movimiento del jugador en función del estado actual del juego.
+     *
+     * @param s Estado actual del juego.
+     * @return PlayerMove El movimiento seleccionado.
+     */
+    @Override
+    public PlayerMove move(HexGameStatus s) {
+
+        timeout = false;
+        BitBoard board = new BitBoard(s);
+        if (workers == null || workers[0].playout.getSize() != board.getSize()) {
+            workers = createWorkers(board.getSize());
+        }
+
+        boolean shared = shared();
+        for (int i = 0; i < workers.length; i++) {
+            Worker w = workers[i];
+            if (i == 0 || !shared) {
+                w.tree.reset();
+                int n = board.getMoves(w.moves);
+                w.tree.expand(0, w.moves, n);
+            }
+            w.board = i == 0 ? board : new BitBoard(board);
+            w.quota = maxIterations / workers.length + (i < maxIterations % workers.length ? 1 : 0);
+        }
+
+        List<Future<?>> helpers = new ArrayList<>(workers.length - 1);
+        for (int i = 1; i < workers.length; i++) helpers.add(helperPool().submit(workers[i]));
+        workers[0].run();
+        for (Future<?> f : helpers) {
+            try {
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                ex.getCause().printStackTrace();
+            }
+        }
+
+        long iterations = 0;
+        int maxDepth = 0;
+        for (Worker w : workers) {
+            iterations += w.iterations;
+            maxDepth = Math.max(maxDepth, w.maxDepth);
+        }
+
+        timeout = false;
+        return new PlayerMove(board.toPoint(bestMove(board.getCells())), iterations, maxDepth, SearchType.MONTECARLO);
+    }
+
+    private boolean shared() {
+        return parallelism == Parallelism.TREE_PARALLEL && threads > 1;
+    }
+
+    private Worker[] createWorkers(int size) {
+        Worker[] ws = new Worker[threads];
+        Playout playout = new Playout(size);
+        if (shared()) {
+            MctsTree tree = new MctsTree(capacity);
+            for (int i = 0; i < threads; i++) ws[i] = new Worker(tree, i == 0 ? playout : playout.split(), true);
+        } else {
+            int perTree = Math.max(size * size + 1, capacity / threads);
+            for (int i = 0; i < threads; i++) ws[i] = new Worker(new MctsTree(perTree), i == 0 ? playout : playout.split(), false);
+        }
+        return ws;
+    }
+
+    /**
+     * Pool de hilos ayudantes, creado la primera vez que se necesita.
+     */
+    private ExecutorService helperPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads - 1, r -> {
+                Thread t = new Thread(r, "SexagonoMCTS-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Libera los hilos ayudantes. Conviene llamarlo al acabar la partida; si el
+     * jugador se vuelve a usar, se crean de nuevo.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Jugada de la raíz con más visitas, sumando las de todos los árboles.
+     */
+    private int bestMove(int cells) {
+        if (workers.length == 1 || shared()) {
+            MctsTree tree = workers[0].tree;
+            return tree.move[tree.mostVisitedChild(0)];
+        }
+        long[] total = new long[cells];
+        for (Worker w : workers) {
+            MctsTree tree = w.tree;
+            int first = tree.firstChild[0], end = first + tree.childCount[0];
+            for (int c = first; c < end; c++) total[tree.move[c]] += tree.visits[c];
+        }
+        MctsTree tree = workers[0].tree;
+        int best = tree.move[tree.firstChild[0]];
+        for (int c = 0; c < cells; c++) {
+            if (total[c] > total[best]) best = c;
+        }
+        return best;
+    }
+
+    /**
+     * Estado de un hilo de búsqueda: su tablero, su generador y sus buffers.
+     */
+    private final class Worker implements Runnable {
+        final MctsTree tree;
+        final Playout playout;
+        final boolean shared;
+        final int[] path;
+        final int[] moves;
+        BitBoard board;
+        long quota;
+        long iterations;
+        int maxDepth;
+
+        Worker(MctsTree tree, Playout playout, boolean shared) {
+            int cells = playout.getSize() * playout.getSize();
+            this.tree = tree;
+            this.playout = playout;
+            this.shared = shared;
+            this.path = new int[cells + 2];
+            this.moves = new int[cells];
+        }
+
+        @Override
+        public void run() {
+            iterations = 0;
+            maxDepth = 0;
+            while (useTimeout ? !timeout : iterations < quota) {
+                maxDepth = Math.max(maxDepth, simulate());
+                iterations++;
+            }
+        }
+
+        /**
+         * Una iteración de MCTS: selección, expansión, simulación y retropropagación.
+         *
+         * @return Profundidad en el árbol alcanzada.
+         */
+        private int simulate() {
+            int rootPlayer = board.getCurrentPlayer();
+
+            // Selección
+            int node = 0, pathLen = 0, played = 0;
+            path[pathLen++] = 0;
+            if (shared) tree.addVirtualLoss(0);
+            while (tree.isExpanded(node) && !board.isGameOver()) {
+                node = tree.select(node);
+                if (shared) tree.addVirtualLoss(node);
+                board.play(tree.move[node]);
+                played++;
+                path[pathLen++] = node;
+            }
+
+            // Expansión: a partir de la segunda visita a una hoja
+            if (!board.isGameOver() && tree.visits[node] > (shared ? MctsTree.VIRTUAL_LOSS : 0)) {
+                int n = board.getMoves(moves);
+                if (tree.expand(node, moves, n)) {
+                    node = tree.select(node);
+                    if (shared) tree.addVirtualLoss(node);
+                    board.play(tree.move[node]);
+                    played++;
+                    path[pathLen++] = node;
+                }
+            }
+
+            // Simulación: rellenar el tablero no cambia al ganador si ya lo hay
+            playout.load(board);
+            int winner = playout.run();
+            for (int i = 0; i < played; i++) board.undo();
+
+            // Retropropagación con AMAF: los hijos de x son casillas vacías en x,
+            // así que su dueño final es quien las ha jugado después de x
+            for (int k = 0; k < pathLen; k++) {
+                int x = path[k];
+                int toMove = (k & 1) == 0 ? rootPlayer : 1 - rootPlayer;
+                // Las victorias de x cuentan para quien ha jugado la casilla, el rival de toMove
+                tree.update(x, k > 0 && winner != toMove, shared);
+                if (!tree.isExpanded(x)) continue;
+                int first = tree.firstChild[x], end = first + tree.childCount[x];
+                for (int c = first; c < end; c++) {
+                    int m = tree.move[c];
+                    if (playout.owner(m) == toMove) tree.updateRave(c, winner == toMove, shared);
+                }
+            }
+            return pathLen - 1;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "SexagonoMCTS";
+    }
+}
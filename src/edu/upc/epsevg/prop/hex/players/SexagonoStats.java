@@ -0,0 +1,211 @@
+package edu.upc.epsevg.prop.hex.players;
+
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Implementación de {@link SexagonoStatsMBean}.
+ *
+ * Los buscadores cuentan en campos propios sin sincronizar y vuelcan aquí lo
+ * acumulado cada cierto número de nodos ({@link #add}), así que cada nodo sólo
+ * paga un incremento. Sólo se publica si se registra ({@link #register}); no
+ * guarda ninguna referencia al jugador, así que el MBean se desregistra solo
+ * cuando el jugador deja de ser alcanzable, si no se ha hecho antes.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+final class SexagonoStats implements SexagonoStatsMBean {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder interior = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder firstCutoffs = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder evalSamples = new LongAdder();
+    private final LongAdder evalSampleNanos = new LongAdder();
+
+    // Jugada en curso
+    private boolean searching;
+    private long moveStart;
+    private long moveNodes;
+    private double lastRate;
+    private int completedDepth;
+    private Point bestMove;
+    private int score;
+    private long iterationNodes;
+    private double branching;
+
+    // Registro en el MBeanServer, o null si no está publicado
+    private Cleaner.Cleanable registration;
+
+    /**
+     * Registra las estadísticas en el MBeanServer de la plataforma, con nombre
+     * {@code edu.upc.epsevg.prop.hex:type=Sexagono,name=<nombre>,id=<n>}. No
+     * hace nada si ya están registradas.
+     *
+     * @param owner Jugador; al recogerlo el GC se desregistra el MBean.
+     * @param name Nombre del jugador.
+     */
+    synchronized void register(Object owner, String name) {
+        if (registration != null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("edu.upc.epsevg.prop.hex:type=Sexagono,name="
+                    + ObjectName.quote(name) + ",id=" + IDS.incrementAndGet());
+            server.registerMBean(this, on);
+            registration = CLEANER.register(owner, () -> unregister(server, on));
+        } catch (JMException | SecurityException ex) {
+            // Sin JMX el jugador funciona igual, sólo sin estadísticas visibles
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Retira el MBean del MBeanServer, si estaba registrado.
+     */
+    synchronized void unregister() {
+        if (registration == null) return;
+        registration.clean();
+        registration = null;
+    }
+
+    private static void unregister(MBeanServer server, ObjectName on) {
+        try {
+            server.unregisterMBean(on);
+        } catch (JMException ex) {
+            // Ya no estaba registrado
+        }
+    }
+
+    /**
+     * Vuelca los contadores de un buscador.
+     */
+    void add(long nodes, long interior, long cutoffs, long firstCutoffs,
+             long evaluations, long evalSamples, long evalSampleNanos) {
+        this.nodes.add(nodes);
+        this.interior.add(interior);
+        this.cutoffs.add(cutoffs);
+        this.firstCutoffs.add(firstCutoffs);
+        this.evaluations.add(evaluations);
+        this.evalSamples.add(evalSamples);
+        this.evalSampleNanos.add(evalSampleNanos);
+    }
+
+    synchronized void startMove() {
+        searching = true;
+        moveStart = System.nanoTime();
+        moveNodes = nodes.sum();
+        completedDepth = 0;
+        bestMove = null;
+        score = 0;
+        iterationNodes = 0;
+        branching = 0;
+    }
+
+    /**
+     * Resultado de una iteración completada por el buscador principal.
+     *
+     * @param nodesInIteration Nodos que ha costado la iteración.
+     */
+    synchronized void iteration(int depth, Point move, int score, long nodesInIteration) {
+        // Con una sola iteración (profundidad fija) se usa la raíz d-ésima de sus nodos
+        branching = iterationNodes > 0 ? (double) nodesInIteration / iterationNodes
+                : Math.pow(nodesInIteration, 1.0 / Math.max(1, depth));
+        iterationNodes = nodesInIteration;
+        completedDepth = depth;
+        bestMove = move;
+        this.score = score;
+    }
+
+    synchronized void endMove() {
+        lastRate = rate();
+        searching = false;
+    }
+
+    private double rate() {
+        long elapsed = System.nanoTime() - moveStart;
+        return elapsed <= 0 ? 0 : (nodes.sum() - moveNodes) * 1e9 / elapsed;
+    }
+
+    @Override
+    public synchronized boolean isSearching() {
+        return searching;
+    }
+
+    @Override
+    public synchronized double getNodesPerSecond() {
+        return searching ? rate() : lastRate;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public synchronized int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    @Override
+    public synchronized String getBestMove() {
+        return bestMove == null ? "" : "(" + bestMove.x + ", " + bestMove.y + ")";
+    }
+
+    @Override
+    public synchronized int getScore() {
+        return score;
+    }
+
+    @Override
+    public double getCutoffRate() {
+        long n = interior.sum();
+        return n == 0 ? 0 : (double) cutoffs.sum() / n;
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        long n = cutoffs.sum();
+        return n == 0 ? 0 : (double) firstCutoffs.sum() / n;
+    }
+
+    @Override
+    public synchronized double getEffectiveBranchingFactor() {
+        return branching;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public double getEvaluationMillis() {
+        long samples = evalSamples.sum();
+        return samples == 0 ? 0 : evalSampleNanos.sum() / 1e6 / samples * evaluations.sum();
+    }
+
+    @Override
+    public void reset() {
+        nodes.reset();
+        interior.reset();
+        cutoffs.reset();
+        firstCutoffs.reset();
+        evaluations.reset();
+        evalSamples.reset();
+        evalSampleNanos.reset();
+        synchronized (this) {
+            moveNodes = 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Estadísticas de búsqueda de un jugador {@link Sexagono}, publicadas por JMX
+ * (jconsole, VisualVM) y actualizadas en vivo durante la búsqueda.
+ *
+ * Los contadores son acumulados desde la creación del jugador o desde el
+ * último {@link #reset()}; la velocidad, la profundidad, la jugada y la
+ * puntuación son de la jugada en curso (o de la última, entre jugadas).
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public interface SexagonoStatsMBean {
+
+    /** Indica si el jugador está buscando una jugada ahora mismo. */
+    boolean isSearching();
+
+    /** Nodos por segundo de la jugada en curso, o de la última. */
+    double getNodesPerSecond();
+
+    /** Nodos explorados en total (búsqueda, pondering y solver). */
+    long getNodes();
+
+    /** Última profundidad completada por el buscador principal. */
+    int getCompletedDepth();
+
+    /** Mejor jugada de la última profundidad completada, como "(x, y)". */
+    String getBestMove();
+
+    /** Puntuación de la mejor jugada, desde el punto de vista del jugador. */
+    int getScore();
+
+    /** Proporción de nodos interiores que terminan con un corte alfa-beta. */
+    double getCutoffRate();
+
+    /** Proporción de los cortes producidos por la primera jugada probada. */
+    double getFirstMoveCutoffRate();
+
+    /**
+     * Factor de ramificación efectivo: nodos de la última iteración completada
+     * entre los de la anterior, en el buscador principal. Si sólo ha habido una
+     * (profundidad fija), la raíz d-ésima de sus nodos.
+     */
+    double getEffectiveBranchingFactor();
+
+    /** Hojas evaluadas con la heurística. */
+    long getEvaluations();
+
+    /** Tiempo estimado dentro de la heurística, en milisegundos (por muestreo). */
+    double getEvaluationMillis();
+
+    /** Pone a cero los contadores acumulados. */
+    void reset();
+}
@@ -0,0 +1,156 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Distancia más corta entre los dos bordes de un jugador, sin generar basura.
+ *
+ * Como los costes de las aristas son sólo 0, 1 o 2, en lugar de una cola de
+ * prioridad se usa el algoritmo de Dial con tres cubetas circulares sobre
+ * índices planos de casilla. Vecinos, puentes y sus casillas comunes salen de
+ * las tablas de {@link HexGeometry} y los buffers son por hilo.
+ *
+ * Costes: piedra del jugador evaluado 0, casilla vacía 2, casilla común de un
+ * puente activo del jugador 1, el resto no se puede atravesar. Los puentes y
+ * las plantillas de borde salen de las {@link VirtualConnections} del tablero,
+ * que ya están al día: una piedra unida al borde inicial por una plantilla es
+ * un origen a distancia 0 y una unida al borde final termina la búsqueda.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class ShortestPath {
+
+    public static final int INFINITE = Integer.MAX_VALUE;
+
+    private ShortestPath() {
+    }
+
+    /**
+     * Buffers reutilizables de un hilo. Las marcas por generación evitan
+     * limpiar los arrays en cada llamada.
+     */
+    static final class Scratch {
+        int[] dist = new int[0];
+        int[] doneStamp = new int[0];
+        int[] carrierStamp = new int[0];
+        int stamp;
+        int mark;
+        final int[][] bucket = new int[3][];
+        final int[] bucketLen = new int[3];
+
+        void ensure(int cells, int size) {
+            if (dist.length < cells) {
+                dist = new int[cells];
+                doneStamp = new int[cells];
+                carrierStamp = new int[cells];
+                stamp = 0;
+                mark = 0;
+            }
+            int cap = 6 * cells + size;
+            if (bucket[0] == null || bucket[0].length < cap) {
+                for (int i = 0; i < 3; i++) bucket[i] = new int[cap];
+            }
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                java.util.Arrays.fill(doneStamp, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        int nextMark() {
+            if (++mark == Integer.MAX_VALUE) {
+                java.util.Arrays.fill(carrierStamp, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Calcula la distancia más corta entre los bordes del jugador.
+     *
+     * @param b Tablero de búsqueda.
+     * @param player Jugador evaluado (0 o 1).
+     * @return Distancia, o {@link #INFINITE} si los bordes no se pueden unir.
+     */
+    public static int distance(BitBoard b, int player) {
+        HexGeometry g = b.geo;
+        Scratch sc = SCRATCH.get();
+        sc.ensure(g.cells, g.size);
+        int done = sc.nextStamp();
+        int[] dist = sc.dist;
+        int[] doneStamp = sc.doneStamp;
+        int[] carrierStamp = sc.carrierStamp;
+        int[][] bucket = sc.bucket;
+        int[] len = sc.bucketLen;
+        len[0] = len[1] = len[2] = 0;
+
+        VirtualConnections vc = b.getVirtualConnections();
+        int n = g.size;
+        for (int i = 0; i < g.cells; i++) {
+            if (vc.connectsToEdge(player, 0, i)) {
+                dist[i] = 0;
+                bucket[0][len[0]++] = i;
+            } else {
+                dist[i] = INFINITE;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            int c = player == 0 ? i : i * n;
+            if (b.isEmpty(c)) {
+                dist[c] = 2;
+                bucket[2][len[2]++] = c;
+            }
+        }
+
+        int d = 0, pending = len[0] + len[2];
+        while (pending > 0) {
+            int q = d % 3;
+            while (len[q] > 0) {
+                int u = bucket[q][--len[q]];
+                pending--;
+                if (doneStamp[u] == done || dist[u] != d) continue;
+                doneStamp[u] = done;
+
+                if (g.onEndEdge(player, u) || vc.connectsToEdge(player, 1, u)) return d;
+
+                // Casillas comunes de los puentes activos que salen de u
+                int mark = 0;
+                int dirs = b.owns(player, u) ? vc.bridges(player, u) : 0;
+                if (dirs != 0) {
+                    mark = sc.nextMark();
+                    for (; dirs != 0; dirs &= dirs - 1) {
+                        int k = Integer.numberOfTrailingZeros(dirs);
+                        carrierStamp[g.bridgeCarrier[u * 12 + 2 * k]] = mark;
+                        carrierStamp[g.bridgeCarrier[u * 12 + 2 * k + 1]] = mark;
+                    }
+                }
+
+                int base = u * 6;
+                for (int k = 0; k < g.degree[u]; k++) {
+                    int v = g.neigh[base + k];
+                    int cost;
+                    if (mark != 0 && carrierStamp[v] == mark) cost = 1;
+                    else if (b.owns(player, v)) cost = 0;
+                    else if (b.isEmpty(v)) cost = 2;
+                    else continue;
+
+                    int nd = d + cost;
+                    if (nd < dist[v]) {
+                        dist[v] = nd;
+                        int bq = nd % 3;
+                        bucket[bq][len[bq]++] = v;
+                        pending++;
+                    }
+                }
+            }
+            d++;
+        }
+        return INFINITE;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Tabla de transposiciones de tamaño fijo indexada por hash Zobrist.
+ *
+ * El número de cubetas es potencia de dos y cada cubeta tiene dos entradas:
+ * la primera se reemplaza sólo por búsquedas de igual o mayor profundidad y la
+ * segunda se reemplaza siempre.
+ *
+ * Cada entrada son dos longs: la clave (guardada como {@code hash ^ data}) y los
+ * datos empaquetados. Al leer se comprueba que {@code clave ^ data == hash}, de
+ * forma que una entrada escrita a medias por otro hilo se descarta como fallo.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    /** Valor de {@link #probe(long)} cuando no hay entrada. */
+    public static final long MISS = 0L;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] table;
+    private final int mask;
+
+    /**
+     * Crea la tabla con el mayor número de cubetas potencia de dos que cabe en
+     * el presupuesto de memoria.
+     *
+     * @param megabytes Memoria máxima a usar, en MB.
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(2L, ((long) megabytes << 20) / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 28));
+        this.table = new long[buckets * 4];
+        this.mask = buckets - 1;
+    }
+
+    /** Borra todas las entradas. */
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Busca la posición.
+     *
+     * @param hash Hash Zobrist de la posición.
+     * @return Datos empaquetados (usar {@link #score}, {@link #depth},
+     *         {@link #bound}, {@link #move}) o {@link #MISS}.
+     */
+    public long probe(long hash) {
+        int i = ((int) hash & mask) << 2;
+        long data = table[i + 1];
+        if ((table[i] ^ data) == hash && data != MISS) return data;
+        data = table[i + 3];
+        if ((table[i + 2] ^ data) == hash && data != MISS) return data;
+        return MISS;
+    }
+
+    /**
+     * Guarda el resultado de una búsqueda.
+     *
+     * @param hash Hash Zobrist de la posición.
+     * @param depth Profundidad restante con la que se buscó.
+     * @param bound {@link #EXACT}, {@link #LOWER} o {@link #UPPER}.
+     * @param score Valor obtenido.
+     * @param move Mejor casilla, o -1 si no hay.
+     */
+    public void store(long hash, int depth, int bound, int score, int move) {
+        long data = pack(depth, bound, score, move);
+        int i = ((int) hash & mask) << 2;
+        long old = table[i + 1];
+        if ((table[i] ^ old) == hash || old == MISS || depth >= depth(old)) {
+            table[i + 1] = data;
+            table[i] = hash ^ data;
+        } else {
+            table[i + 3] = data;
+            table[i + 2] = hash ^ data;
+        }
+    }
+
+    // Formato: score (32 bits) | move + 1 (16 bits) | depth (12 bits) | bound (2 bits) | 1 (bit de ocupado)
+    private static long pack(int depth, int bound, int score, int move) {
+        return ((long) score << 32)
+                | ((long) ((move + 1) & 0xFFFF) << 16)
+                | ((long) (Math.min(depth, 0xFFF) & 0xFFF) << 3)
+                | ((long) bound << 1)
+                | 1L;
+    }
+
+    public static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int move(long data) {
+        return (int) ((data >>> 16) & 0xFFFF) - 1;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 3) & 0xFFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 1) & 0x3);
+    }
+}
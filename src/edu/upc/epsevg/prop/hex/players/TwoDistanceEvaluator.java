@@ -0,0 +1,239 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Heurística de la two-distance clásica de Hex (Anshelevich, Queenbee).
+ *
+ * La two-distance de una casilla vacía a un borde es 1 si es adyacente al borde
+ * y, si no, uno más que el segundo menor valor entre sus vecinos: el rival
+ * siempre puede bloquear el mejor camino, así que cuenta el segundo mejor. Las
+ * piedras propias no cuestan nada: una casilla adyacente a un grupo propio es
+ * vecina de todas las casillas vacías que rodean al grupo.
+ *
+ * El potencial de un jugador es el mínimo, sobre las casillas vacías, de la
+ * suma de sus two-distances a ambos bordes. Como desempate se usa el número de
+ * casillas que alcanzan ese mínimo (cuántos caminos de potencial mínimo hay).
+ *
+ * Todo se calcula con arrays planos por hilo, igual que {@link ShortestPath}.
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public class TwoDistanceEvaluator implements Evaluator {
+
+    private static final int INF = Integer.MAX_VALUE / 4;
+
+    /**
+     * Buffers reutilizables de un hilo.
+     */
+    static final class Scratch {
+        int cells = -1;
+        int[] gid;
+        int[] groupStart;
+        int[] groupEmpties;
+        boolean[] groupStartEdge;
+        boolean[] groupEndEdge;
+        int[] distA;
+        int[] distB;
+        int[] hits;
+        int[] frontier;
+        int[] next;
+        int[] stack;
+        int[] seen;
+        int mark;
+
+        void ensure(int cells) {
+            if (this.cells == cells) return;
+            this.cells = cells;
+            gid = new int[cells];
+            groupStart = new int[cells + 1];
+            groupEmpties = new int[cells * 6];
+            groupStartEdge = new boolean[cells];
+            groupEndEdge = new boolean[cells];
+            distA = new int[cells];
+            distB = new int[cells];
+            hits = new int[cells];
+            frontier = new int[cells];
+            next = new int[cells];
+            stack = new int[cells];
+            seen = new int[cells];
+            mark = 0;
+        }
+
+        int nextMark() {
+            if (++mark == Integer.MAX_VALUE) {
+                java.util.Arrays.fill(seen, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** Potencial y número de casillas que lo alcanzan, del último {@link #potential}. */
+    private static final class Result {
+        int potential;
+        int count;
+    }
+
+    private static final ThreadLocal<Result[]> RESULTS =
+            ThreadLocal.withInitial(() -> new Result[]{new Result(), new Result()});
+
+    @Override
+    public int evaluate(BitBoard board, int player) {
+        Scratch sc = SCRATCH.get();
+        sc.ensure(board.getCells());
+        Result[] r = RESULTS.get();
+        potential(board, player, sc, r[0]);
+        potential(board, 1 - player, sc, r[1]);
+
+        // El desempate nunca puede pesar más que un punto de potencial
+        int weight = board.getCells() + 1;
+        return (r[1].potential - r[0].potential) * weight + (r[0].count - r[1].count);
+    }
+
+    @Override
+    public String getName() {
+        return "two-distance";
+    }
+
+    /**
+     * Calcula el potencial de un jugador: mínimo de la suma de two-distances
+     * a ambos bordes y número de casillas que lo alcanzan.
+     */
+    static void potential(BitBoard b, int player, Scratch sc, Result out) {
+        HexGeometry g = b.geo;
+        int limit = 4 * g.cells;
+        buildGroups(b, player, sc);
+        twoDistance(b, player, true, sc, sc.distA);
+        twoDistance(b, player, false, sc, sc.distB);
+
+        int best = limit, count = 0;
+        for (int c = 0; c < g.cells; c++) {
+            if (!b.isEmpty(c) || sc.distA[c] >= INF || sc.distB[c] >= INF) continue;
+            int p = sc.distA[c] + sc.distB[c];
+            if (p < best) {
+                best = p;
+                count = 1;
+            } else if (p == best) {
+                count++;
+            }
+        }
+        out.potential = best;
+        out.count = count;
+    }
+
+    /**
+     * Etiqueta los grupos de piedras del jugador y guarda, en formato CSR, las
+     * casillas vacías adyacentes a cada grupo.
+     */
+    private static void buildGroups(BitBoard b, int player, Scratch sc) {
+        HexGeometry g = b.geo;
+        int[] gid = sc.gid;
+        java.util.Arrays.fill(gid, 0, g.cells, -1);
+        int groups = 0, out = 0;
+
+        for (int s = 0; s < g.cells; s++) {
+            if (gid[s] >= 0 || !b.owns(player, s)) continue;
+            int id = groups++;
+            int mark = sc.nextMark();
+            sc.groupStart[id] = out;
+            sc.groupStartEdge[id] = false;
+            sc.groupEndEdge[id] = false;
+
+            int top = 0;
+            sc.stack[top++] = s;
+            gid[s] = id;
+            while (top > 0) {
+                int c = sc.stack[--top];
+                sc.groupStartEdge[id] |= g.onStartEdge(player, c);
+                sc.groupEndEdge[id] |= g.onEndEdge(player, c);
+                for (int k = 0; k < g.degree[c]; k++) {
+                    int v = g.neigh[c * 6 + k];
+                    if (b.owns(player, v)) {
+                        if (gid[v] < 0) {
+                            gid[v] = id;
+                            sc.stack[top++] = v;
+                        }
+                    } else if (b.isEmpty(v) && sc.seen[v] != mark) {
+                        sc.seen[v] = mark;
+                        sc.groupEmpties[out++] = v;
+                    }
+                }
+            }
+        }
+        sc.groupStart[groups] = out;
+    }
+
+    /**
+     * Two-distance de cada casilla vacía a uno de los bordes del jugador,
+     * calculada por niveles: una casilla recibe el valor L + 1 en cuanto dos de
+     * sus vecinos tienen valor menor o igual que L.
+     */
+    private static void twoDistance(BitBoard b, int player, boolean start, Scratch sc, int[] dist) {
+        HexGeometry g = b.geo;
+        int n = g.size;
+        int[] hits = sc.hits;
+        java.util.Arrays.fill(dist, 0, g.cells, INF);
+        java.util.Arrays.fill(hits, 0, g.cells, 0);
+
+        // Nivel 1: casillas vacías adyacentes al borde, directamente o a través de un grupo
+        int len = 0;
+        int mark = sc.nextMark();
+        int row = start ? 0 : n - 1;
+        for (int i = 0; i < n; i++) {
+            int c = player == 0 ? row * n + i : i * n + row;
+            if (b.isEmpty(c)) {
+                len = reach(c, 1, dist, sc, mark, len);
+            } else if (b.owns(player, c)) {
+                int id = sc.gid[c];
+                for (int j = sc.groupStart[id]; j < sc.groupStart[id + 1]; j++)
+                    len = reach(sc.groupEmpties[j], 1, dist, sc, mark, len);
+            }
+        }
+
+        int level = 1;
+        int[] frontier = sc.frontier, next = sc.next;
+        while (len > 0) {
+            int nextLen = 0;
+            for (int f = 0; f < len; f++) {
+                int c = frontier[f];
+                int m = sc.nextMark();
+                sc.seen[c] = m;
+                for (int k = 0; k < g.degree[c]; k++) {
+                    int v = g.neigh[c * 6 + k];
+                    if (b.isEmpty(v)) {
+                        nextLen = hit(v, level + 1, dist, sc, m, next, nextLen);
+                    } else if (b.owns(player, v)) {
+                        int id = sc.gid[v];
+                        for (int j = sc.groupStart[id]; j < sc.groupStart[id + 1]; j++)
+                            nextLen = hit(sc.groupEmpties[j], level + 1, dist, sc, m, next, nextLen);
+                    }
+                }
+            }
+            int[] t = frontier;
+            frontier = next;
+            next = t;
+            len = nextLen;
+            level++;
+        }
+    }
+
+    private static int reach(int c, int value, int[] dist, Scratch sc, int mark, int len) {
+        if (sc.seen[c] == mark) return len;
+        sc.seen[c] = mark;
+        dist[c] = value;
+        sc.frontier[len] = c;
+        return len + 1;
+    }
+
+    private static int hit(int e, int value, int[] dist, Scratch sc, int mark, int[] next, int len) {
+        if (sc.seen[e] == mark || dist[e] != INF) return len;
+        sc.seen[e] = mark;
+        if (++sc.hits[e] >= 2) {
+            dist[e] = value;
+            next[len++] = e;
+        }
+        return len;
+    }
+}
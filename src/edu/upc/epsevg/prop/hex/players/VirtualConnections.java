@@ -0,0 +1,160 @@
+package edu.upc.epsevg.prop.hex.players;
+
+/**
+ * Conexiones virtuales de ambos jugadores mantenidas incrementalmente sobre un
+ * {@link BitBoard}: puentes entre dos piedras propias y plantillas de borde
+ * (puente al borde y ziggurat) de una piedra con uno de sus bordes.
+ *
+ * Un puente está activo si sus dos casillas comunes están vacías; una
+ * plantilla, si su carrier no tiene piedras rivales. Cada vez que el tablero
+ * coloca o quita una piedra sólo se recalculan las conexiones en las que
+ * participa esa casilla (listas precalculadas en {@link HexGeometry}), así que
+ * todas las consultas son O(1).
+ *
+ * @author Marc Gamboa
+ * @author Andreu Pino
+ */
+public final class VirtualConnections {
+
+    private final BitBoard board;
+    private final HexGeometry geo;
+
+    /** Direcciones de los puentes activos de cada casilla: {@code bridges[player][cell]}. */
+    private final byte[][] bridges;
+    /** Plantillas activas de cada piedra hacia cada borde: {@code edges[2 * player + side][cell]}. */
+    private final byte[][] edges;
+    private final boolean[] templateOn;
+
+    /**
+     * Calcula todas las conexiones de la posición actual del tablero.
+     */
+    VirtualConnections(BitBoard board) {
+        this.board = board;
+        this.geo = board.geo;
+        this.bridges = new byte[2][geo.cells];
+        this.edges = new byte[4][geo.cells];
+        this.templateOn = new boolean[geo.templates];
+        for (int c = 0; c < geo.cells; c++) {
+            for (int k = 0; k < 6; k++) {
+                if (geo.bridge[c * 6 + k] > c) refreshBridge(c, k);
+            }
+        }
+        for (int t = 0; t < geo.templates; t++) refreshTemplate(t);
+    }
+
+    /**
+     * Copia el estado de otro tablero con la misma posición.
+     */
+    VirtualConnections(BitBoard board, VirtualConnections other) {
+        this.board = board;
+        this.geo = board.geo;
+        this.bridges = new byte[][]{other.bridges[0].clone(), other.bridges[1].clone()};
+        this.edges = new byte[4][];
+        for (int i = 0; i < 4; i++) this.edges[i] = other.edges[i].clone();
+        this.templateOn = other.templateOn.clone();
+    }
+
+    /**
+     * Copia en el sitio el estado de otro tablero con la misma posición.
+     */
+    void copyFrom(VirtualConnections other) {
+        for (int p = 0; p < 2; p++) System.arraycopy(other.bridges[p], 0, bridges[p], 0, geo.cells);
+        for (int i = 0; i < 4; i++) System.arraycopy(other.edges[i], 0, edges[i], 0, geo.cells);
+        System.arraycopy(other.templateOn, 0, templateOn, 0, templateOn.length);
+    }
+
+    /**
+     * Recalcula las conexiones afectadas por un cambio en la casilla.
+     */
+    void refresh(int cell) {
+        for (int k = 0; k < 6; k++) {
+            int t = geo.bridge[cell * 6 + k];
+            if (t < 0) continue;
+            if (t > cell) refreshBridge(cell, k);
+            else refreshBridge(t, k ^ 1);
+        }
+        for (int i = geo.carrierBridgesStart[cell]; i < geo.carrierBridgesStart[cell + 1]; i++) {
+            int b = geo.carrierBridges[i];
+            refreshBridge(b / 6, b % 6);
+        }
+        for (int i = geo.cellTemplatesStart[cell]; i < geo.cellTemplatesStart[cell + 1]; i++) {
+            refreshTemplate(geo.cellTemplates[i]);
+        }
+    }
+
+    /**
+     * Puente de {@code a} en la dirección {@code k} (el destino es mayor que
+     * {@code a}; la dirección opuesta es {@code k ^ 1}).
+     */
+    private void refreshBridge(int a, int k) {
+        int b = geo.bridge[a * 6 + k];
+        int m1 = geo.bridgeCarrier[a * 12 + 2 * k], m2 = geo.bridgeCarrier[a * 12 + 2 * k + 1];
+        int now = BitBoard.NONE;
+        if (board.isEmpty(m1) && board.isEmpty(m2)) {
+            if (board.owns(0, a) && board.owns(0, b)) now = 0;
+            else if (board.owns(1, a) && board.owns(1, b)) now = 1;
+        }
+        int bit = 1 << k;
+        int before = (bridges[0][a] & bit) != 0 ? 0 : (bridges[1][a] & bit) != 0 ? 1 : BitBoard.NONE;
+        if (before == now) return;
+        if (before != BitBoard.NONE) {
+            bridges[before][a] &= ~bit;
+            bridges[before][b] &= ~(1 << (k ^ 1));
+        }
+        if (now != BitBoard.NONE) {
+            bridges[now][a] |= bit;
+            bridges[now][b] |= 1 << (k ^ 1);
+        }
+    }
+
+    private void refreshTemplate(int t) {
+        int p = geo.templatePlayer[t];
+        int anchor = geo.templateAnchor[t];
+        boolean now = board.owns(p, anchor);
+        long[] opp = board.stones[1 - p];
+        for (int w = 0; now && w < geo.words; w++) {
+            if ((geo.templateMask[t * geo.words + w] & opp[w]) != 0) now = false;
+        }
+        if (now == templateOn[t]) return;
+        templateOn[t] = now;
+        edges[2 * p + geo.templateSide[t]][anchor] += now ? 1 : -1;
+    }
+
+    /**
+     * Direcciones de los puentes activos del jugador desde la casilla, como
+     * máscara de bits sobre los índices de {@code HexGeometry.bridge}.
+     */
+    public int bridges(int player, int cell) {
+        return bridges[player][cell];
+    }
+
+    /**
+     * Indica si la piedra del jugador está conectada al borde, porque lo toca o
+     * por una plantilla activa.
+     *
+     * @param side 0 para el borde inicial, 1 para el final.
+     */
+    public boolean connectsToEdge(int player, int side, int cell) {
+        if (!board.owns(player, cell)) return false;
+        if (side == 0 ? geo.onStartEdge(player, cell) : geo.onEndEdge(player, cell)) return true;
+        return edges[2 * player + side][cell] > 0;
+    }
+
+    /**
+     * Si la casilla es una de las dos casillas comunes de un puente del jugador
+     * (que ya puede estar roto por una intrusión en ella), devuelve la otra
+     * casilla común si sigue vacía y salva el puente; -1 si no hay ninguna.
+     */
+    public int bridgeReply(int player, int cell) {
+        for (int i = geo.carrierBridgesStart[cell]; i < geo.carrierBridgesStart[cell + 1]; i++) {
+            int ab = geo.carrierBridges[i];
+            int a = ab / 6, k = ab % 6;
+            int b = geo.bridge[ab];
+            if (!board.owns(player, a) || !board.owns(player, b)) continue;
+            int m1 = geo.bridgeCarrier[a * 12 + 2 * k], m2 = geo.bridgeCarrier[a * 12 + 2 * k + 1];
+            int other = m1 == cell ? m2 : m1;
+            if (board.isEmpty(other)) return other;
+        }
+        return -1;
+    }
+}